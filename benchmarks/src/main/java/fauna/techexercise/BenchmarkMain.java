@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * The JMH launcher, except that results are written as JSON to jmh-result.json
+ * unless -rf/-rff say otherwise, so that runs before and after a driver or
+ * Jackson upgrade can be compared (e.g. with jmh.morethan.io). Unless other
+ * profilers are asked for with -prof, the GC profiler runs too, so every
+ * result has its gc.alloc.rate.norm (bytes allocated per operation) next to
+ * its time.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListProfilers()) {
+            Main.main(args);
+            return;
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-result.json");
+        }
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.faunadb.client.types.Value;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * The hand-written ModelCodecs against the reflective paths they replace, for
+ * each direction: JSON to POJO (Jackson binding), document data to POJO
+ * (value.to(model), as Field.at("data").to(model) does), POJO to Value
+ * (Value(pojo)) and POJO to JSON. Compare each xxxReflective with its
+ * xxxCodec on both us/op and gc.alloc.rate.norm:
+ *
+ *   java -jar target/benchmarks.jar CodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"products", "customers"})
+    public String file;
+
+    private byte[] json;
+    private ModelCodec<Object> codec;
+    private ObjectReader elementReader;
+    private Class<?> model;
+    private List<Object> pojos;
+    private List<Value> data;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = NorthwindData.bytes(file);
+        codec = NorthwindData.codecFor(file);
+        model = NorthwindData.modelFor(file);
+        elementReader = NorthwindData.mapper.readerFor(model);
+
+        pojos = new ArrayList<>();
+        data = new ArrayList<>();
+        for (JsonNode node : NorthwindData.mapper.readTree(json)) {
+            pojos.add(elementReader.readValue(node));
+            data.add(JsonValueEncoder.encode(node.traverse()));
+        }
+    }
+
+    @Benchmark
+    public void readReflective(Blackhole blackhole) throws IOException {
+        try (JsonArrayReader<Object> reader =
+                     new JsonArrayReader<>(NorthwindData.mapper.getFactory().createParser(json), elementReader::readValue)) {
+            while (reader.hasNext()) {
+                blackhole.consume(reader.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public void readCodec(Blackhole blackhole) throws IOException {
+        try (JsonArrayReader<Object> reader =
+                     new JsonArrayReader<>(NorthwindData.mapper.getFactory().createParser(json), codec)) {
+            while (reader.hasNext()) {
+                blackhole.consume(reader.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public void decodeReflective(Blackhole blackhole) {
+        for (Value value : data) {
+            blackhole.consume(value.to(model).get());
+        }
+    }
+
+    @Benchmark
+    public void decodeCodec(Blackhole blackhole) {
+        for (Value value : data) {
+            blackhole.consume(codec.decode(value));
+        }
+    }
+
+    @Benchmark
+    public void encodeReflective(Blackhole blackhole) {
+        for (Object pojo : pojos) {
+            blackhole.consume(Value(pojo));
+        }
+    }
+
+    @Benchmark
+    public void encodeCodec(Blackhole blackhole) {
+        for (Object pojo : pojos) {
+            blackhole.consume(codec.encode(pojo));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeReflective() throws IOException {
+        return NorthwindData.mapper.writeValueAsBytes(pojos);
+    }
+
+    @Benchmark
+    public byte[] writeCodec() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonGenerator generator = NorthwindData.mapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            for (Object pojo : pojos) {
+                codec.write(generator, pojo);
+            }
+            generator.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.faunadb.client.types.Value;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Decoding a whole northwinds-json file, three ways: Jackson binding the array
+ * to the model class in one go, the streaming JsonArrayReader binding one
+ * element at a time (what the loaders do), and JsonValueEncoder going straight
+ * from tokens to Values without a model class.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    @Param({"categories", "products", "customers", "addresses"})
+    public String file;
+
+    private byte[] json;
+    private ObjectReader arrayReader;
+    private ObjectReader elementReader;
+
+    @Setup
+    public void setUp() throws IOException {
+        json = NorthwindData.bytes(file);
+        Class<?> model = NorthwindData.modelFor(file);
+        arrayReader = NorthwindData.mapper.readerFor(Array.newInstance(model, 0).getClass());
+        elementReader = NorthwindData.mapper.readerFor(model);
+    }
+
+    @Benchmark
+    public Object bindArray() throws IOException {
+        return arrayReader.readValue(json);
+    }
+
+    @Benchmark
+    public void streamElements(Blackhole blackhole) throws IOException {
+        try (JsonArrayReader<Object> reader =
+                     new JsonArrayReader<>(NorthwindData.mapper.getFactory().createParser(json), elementReader::readValue)) {
+            while (reader.hasNext()) {
+                blackhole.consume(reader.next());
+            }
+        }
+    }
+
+    @Benchmark
+    public void encodeValues(Blackhole blackhole) throws IOException {
+        try (JsonArrayReader<Value> reader =
+                     new JsonArrayReader<>(NorthwindData.mapper.getFactory().createParser(json), new JsonValueEncoder())) {
+            while (reader.hasNext()) {
+                blackhole.consume(reader.next());
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Field;
+import com.faunadb.client.types.Value;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * The driver side of the round trip for every record of a file: encoding the
+ * POJOs with Value(pojo) (reflection over @FaunaField), building and
+ * serializing the Create queries the loaders send, and decoding documents as
+ * returned by Get back into POJOs through the models' Field constants.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+    @Param({"categories", "products", "customers"})
+    public String file;
+
+    private List<Object> pojos;
+    private List<Value> documents;
+    private Field<?> field;
+
+    @Setup
+    public void setUp() throws IOException {
+        Class<?> model = NorthwindData.modelFor(file);
+        ObjectReader reader = NorthwindData.mapper.readerFor(model);
+
+        pojos = new ArrayList<>();
+        documents = new ArrayList<>();
+        long ts = 1_530_000_000_000_000L;
+        for (JsonNode node : NorthwindData.mapper.readTree(NorthwindData.file(file))) {
+            pojos.add(reader.readValue(node));
+
+            Map<String, Value> document = new LinkedHashMap<>();
+            document.put("ts", new Value.LongV(ts++));
+            document.put("data", JsonValueEncoder.encode(node.traverse()));
+            documents.add(new Value.ObjectV(document));
+        }
+
+        field = Field.at("data").to(model);
+    }
+
+    @Benchmark
+    public void encodePojos(Blackhole blackhole) {
+        for (Object pojo : pojos) {
+            blackhole.consume(Value(pojo));
+        }
+    }
+
+    @Benchmark
+    public void buildCreates(Blackhole blackhole) {
+        for (Object pojo : pojos) {
+            blackhole.consume(Create(Class(Value(file)), Obj("data", Value(pojo))));
+        }
+    }
+
+    /*
+     * One batched Foreach/Create query for the whole file, serialized to the
+     * bytes that would go over the wire.
+     */
+    @Benchmark
+    public byte[] buildAndSerializeBatch() throws IOException {
+        List<Expr> data = new ArrayList<>(pojos.size());
+        for (Object pojo : pojos) {
+            data.add(Value(pojo));
+        }
+        Expr query = Foreach(
+                Arr(data),
+                Lambda(Value("x"), Create(Class(Value(file)), Obj("data", Var("x"))))
+        );
+        return NorthwindData.mapper.writeValueAsBytes(query);
+    }
+
+    @Benchmark
+    public Expr buildPaginate() {
+        return Map(
+                Paginate(Match(Index(Value(file + "_all")))).after(Arr(Value(42))).size(Value(64)),
+                Lambda(Value("x"), Select(Value("data"), Get(Var("x"))))
+        );
+    }
+
+    @Benchmark
+    public void decodeDocuments(Blackhole blackhole) {
+        for (Value document : documents) {
+            blackhole.consume(document.get(field));
+        }
+    }
+}
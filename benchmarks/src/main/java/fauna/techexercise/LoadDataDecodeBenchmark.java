@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * One record of DataLoading.loadData per operation: the old path, which turned
+ * each JsonNode back into a String, parsed it again and allocated a throwaway
+ * instance of dataClass, against binding the node with a cached ObjectReader.
+ * Run with -prof gc to see the allocation per record (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadDataDecodeBenchmark {
+
+    @Param({"products", "customers"})
+    public String file;
+
+    private List<JsonNode> nodes;
+    private Class<?> model;
+    private ObjectReader reader;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        nodes = new ArrayList<>();
+        NorthwindData.mapper.readTree(NorthwindData.file(file)).elements().forEachRemaining(nodes::add);
+        model = NorthwindData.modelFor(file);
+        reader = NorthwindData.mapper.readerFor(model);
+    }
+
+    private JsonNode nextNode() {
+        JsonNode node = nodes.get(next);
+        next = next + 1 == nodes.size() ? 0 : next + 1;
+        return node;
+    }
+
+    @Benchmark
+    public void stringRoundTrip(Blackhole blackhole) throws Exception {
+        blackhole.consume(model.getDeclaredConstructor().newInstance());
+        blackhole.consume(NorthwindData.mapper.readValue(nextNode().toString(), model));
+    }
+
+    @Benchmark
+    public Object cachedReader() throws IOException {
+        return reader.readValue(nextNode());
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static com.faunadb.client.query.Language.*;
+
+/******************************************************************************
+ *  End to end benchmark of the loading and query code against MockFaunaServer,
+ *  a local stand-in for FaunaDB with a configurable response time, so that
+ *  ingestion can be sized without touching a real cluster. For example
+ *
+ *  java -cp target/benchmarks.jar fauna.techexercise.LoadHarness \
+ *          --latency=20 --jitter=10 --concurrency=32 --records=20000
+ *
+ *  loads products.json records (repeated up to --records) in each of the
+ *  sequential, pipelined and batched modes of DataLoading, then pages through
+ *  --setSize index rows and does --records point reads the way IndexAndQuery
+ *  does. Every query's latency goes into an HdrHistogram, and a line with the
+ *  throughput and latency percentiles is logged per workload. --modes=batched,scan
+ *  picks the workloads to run.
+ *****************************************************************************/
+public class LoadHarness {
+    private static final Logger logger = LoggerFactory.getLogger(LoadHarness.class);
+
+    /*
+     * Records the latency of every query, in microseconds.
+     */
+    private static class TimedExecutor implements QueryExecutor {
+        private final QueryExecutor delegate;
+        private final Recorder recorder = new Recorder(TimeUnit.MINUTES.toMicros(1), 3);
+
+        TimedExecutor(QueryExecutor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletableFuture<Value> query(Expr expr) {
+            long start = System.nanoTime();
+            return delegate.query(expr).whenComplete((value, error) ->
+                    recorder.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start),
+                            TimeUnit.MINUTES.toMicros(1))));
+        }
+
+        Histogram reset() {
+            return recorder.getIntervalHistogram();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        long latency = Long.parseLong(options.getOrDefault("latency", "10"));
+        long jitter = Long.parseLong(options.getOrDefault("jitter", "5"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        int records = Integer.parseInt(options.getOrDefault("records", "10000"));
+        int batchSize = Integer.parseInt(options.getOrDefault("batchSize", "100"));
+        long setSize = Long.parseLong(options.getOrDefault("setSize", "100000"));
+        int pageSize = Integer.parseInt(options.getOrDefault("pageSize", "64"));
+        String[] modes = options.getOrDefault("modes", "sequential,pipelined,batched,scan,lookup").split(",");
+
+        List<Expr> products = products(records);
+
+        try (MockFaunaServer server = new MockFaunaServer(0, latency, jitter, setSize)) {
+            Properties settings = new Properties();
+            settings.setProperty("fauna.endpoint", server.getEndpoint());
+            settings.setProperty("fauna.secret", "mock");
+            settings.setProperty("fauna.maxConcurrentQueries", Integer.toString(Math.max(concurrency, 1)));
+
+            try (ManagedClient client = new FaunaClientFactory(settings).open()) {
+                TimedExecutor executor = new TimedExecutor(client);
+                logger.info("Mock FaunaDB at {}, latency {} ms + up to {} ms, concurrency {}",
+                        server.getEndpoint(), latency, jitter, concurrency);
+
+                for (String mode : modes) {
+                    executor.reset();
+                    long start = System.nanoTime();
+                    long operations = run(mode.trim(), executor, products, concurrency, batchSize, pageSize);
+                    report(mode.trim(), operations, System.nanoTime() - start, executor.reset());
+                }
+            }
+        }
+    }
+
+    private static long run(String mode,
+                            QueryExecutor executor,
+                            List<Expr> products,
+                            int concurrency,
+                            int batchSize,
+                            int pageSize) throws Exception {
+        switch (mode) {
+            case "sequential":
+                return new BulkLoader(executor, 1).load("products", products.iterator()).getLoaded();
+            case "pipelined":
+                return new BulkLoader(executor, concurrency).load("products", products.iterator()).getLoaded();
+            case "batched":
+                return new BulkLoader(executor, concurrency, batchSize, BulkLoader.DEFAULT_MAX_BATCH_BYTES)
+                        .load("products", products.iterator()).getLoaded();
+            case "scan":
+                PageScanner scanner = PageScanner.builder(executor, Match(Index("products_all")))
+                        .withPageSize(pageSize)
+                        .build();
+                long rows = 0;
+                while (scanner.hasNext()) {
+                    scanner.next();
+                    rows++;
+                }
+                return rows;
+            case "lookup":
+                return lookups(executor, products.size(), concurrency);
+            default:
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+    }
+
+    /*
+     * Point reads by productID with up to concurrency of them in flight.
+     */
+    private static long lookups(QueryExecutor executor, int count, int concurrency) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(concurrency);
+        for (int i = 0; i < count; i++) {
+            inFlight.acquire();
+            executor.query(Get(Match(Index("product_lookup_by_product_id"), Value(i % 77 + 1))))
+                    .whenComplete((value, error) -> inFlight.release());
+        }
+        inFlight.acquire(concurrency);
+        return count;
+    }
+
+    private static void report(String mode, long operations, long elapsedNanos, Histogram latencies) {
+        double seconds = elapsedNanos / 1e9;
+        logger.info(String.format("%-10s %8d ops %7d queries %8.0f ops/s  p50 %7.2f  p90 %7.2f  p99 %7.2f  p99.9 %7.2f  max %7.2f ms",
+                mode, operations, latencies.getTotalCount(), operations / seconds,
+                latencies.getValueAtPercentile(50) / 1000.0,
+                latencies.getValueAtPercentile(90) / 1000.0,
+                latencies.getValueAtPercentile(99) / 1000.0,
+                latencies.getValueAtPercentile(99.9) / 1000.0,
+                latencies.getMaxValue() / 1000.0));
+    }
+
+    /*
+     * The products of products.json, encoded the way DataLoading does and
+     * repeated until there are count of them.
+     */
+    private static List<Expr> products(int count) throws Exception {
+        ObjectReader reader = NorthwindData.mapper.readerFor(Product.class);
+        List<Expr> products = new ArrayList<>();
+        for (JsonNode node : NorthwindData.mapper.readTree(NorthwindData.file("products"))) {
+            products.add(Value(reader.readValue(node)));
+        }
+
+        List<Expr> records = new ArrayList<>(count);
+        Iterator<Expr> source = products.iterator();
+        while (records.size() < count) {
+            if (!source.hasNext()) {
+                source = products.iterator();
+            }
+            records.add(source.next());
+        }
+        return records;
+    }
+
+    /*
+     * --name=value arguments.
+     */
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int equals = arg.indexOf('=');
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+}
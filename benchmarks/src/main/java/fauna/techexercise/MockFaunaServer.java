@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A stand-in for the FaunaDB query endpoint, good enough for the driver and
+ * the exercise code but not for checking results. Every query is answered
+ * after latencyMillis plus up to jitterMillis of extra delay:
+ *
+ *  - Paginate, on its own or under Map, returns pages of size rows
+ *    {"id": n} for n = 1 .. setSize, with an after cursor until the end
+ *  - Map over an array returns one {"id": n} object per element
+ *  - Foreach returns its collection, as the real thing does
+ *  - anything else (Create, Get, ...) returns a document {"ts": ..., "data": {}}
+ *
+ * Nothing is stored, so any number of runs can go against the same server.
+ */
+public class MockFaunaServer implements AutoCloseable {
+    private static final JsonNodeFactory nodes = JsonNodeFactory.instance;
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final long setSize;
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong ts = new AtomicLong(1_530_000_000_000_000L);
+
+    public MockFaunaServer(int port, long latencyMillis, long jitterMillis, long setSize) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.setSize = setSize;
+        this.handlers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "mock-fauna");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        this.server.setExecutor(handlers);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    public String getEndpoint() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public long getQueries() {
+        return queries.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            JsonNode query;
+            try (InputStream in = exchange.getRequestBody()) {
+                query = NorthwindData.mapper.readTree(in);
+            }
+            queries.incrementAndGet();
+
+            long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+            if (delay > 0) {
+                Thread.sleep(delay);
+            }
+
+            ObjectNode response = nodes.objectNode();
+            response.set("resource", answer(query));
+            byte[] body = NorthwindData.mapper.writeValueAsBytes(response);
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json;charset=utf-8");
+            exchange.getResponseHeaders().set("X-Txn-Time", Long.toString(ts.get()));
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private JsonNode answer(JsonNode query) {
+        if (query.has("paginate")) {
+            return page(query);
+        }
+        if (query.has("map")) {
+            JsonNode collection = query.get("collection");
+            if (collection.has("paginate")) {
+                return page(collection);
+            }
+            ArrayNode results = nodes.arrayNode();
+            for (int i = 0; i < collection.size(); i++) {
+                results.add(row(i + 1));
+            }
+            return results;
+        }
+        if (query.has("foreach")) {
+            return query.get("collection");
+        }
+        if (query.isArray()) {
+            ArrayNode results = nodes.arrayNode();
+            for (JsonNode element : query) {
+                results.add(answer(element));
+            }
+            return results;
+        }
+
+        ObjectNode document = nodes.objectNode();
+        document.put("ts", ts.incrementAndGet());
+        document.set("data", nodes.objectNode());
+        return document;
+    }
+
+    private JsonNode page(JsonNode paginate) {
+        long after = paginate.has("after") ? paginate.get("after").get(0).asLong() : 0;
+        long size = paginate.has("size") ? paginate.get("size").asLong() : 64;
+        long last = Math.min(setSize, after + size);
+
+        ArrayNode data = nodes.arrayNode();
+        for (long n = after + 1; n <= last; n++) {
+            data.add(row(n));
+        }
+        ObjectNode page = nodes.objectNode();
+        page.set("data", data);
+        if (last < setSize) {
+            page.set("after", nodes.arrayNode().add(last));
+        }
+        return page;
+    }
+
+    private static ObjectNode row(long n) {
+        return nodes.objectNode().put("id", n);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/*
+ * The northwinds-json files the benchmarks read. They are looked up in
+ * ../northwinds-json, relative to the benchmarks directory, unless the
+ * northwind.dir system property (or -jvmArgs -Dnorthwind.dir=...) says otherwise.
+ *
+ * "addresses" is not a file, it is the address of every customer in
+ * customers.json, so that Address can be benchmarked on its own.
+ */
+final class NorthwindData {
+    static final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private NorthwindData() {
+    }
+
+    static File file(String name) {
+        return new File(System.getProperty("northwind.dir", "../northwinds-json"), name + ".json");
+    }
+
+    static byte[] bytes(String name) throws IOException {
+        if ("addresses".equals(name)) {
+            ArrayNode addresses = mapper.createArrayNode();
+            for (JsonNode customer : mapper.readTree(file("customers"))) {
+                addresses.add(customer.get("address"));
+            }
+            return mapper.writeValueAsBytes(addresses);
+        }
+        return Files.readAllBytes(file(name).toPath());
+    }
+
+    static Class<?> modelFor(String name) {
+        switch (name) {
+            case "categories":
+                return Category.class;
+            case "products":
+                return Product.class;
+            case "customers":
+                return Customer.class;
+            case "addresses":
+                return Address.class;
+            default:
+                throw new IllegalArgumentException("No model class for " + name);
+        }
+    }
+
+    /*
+     * The hand-written codec of the file's model class.
+     */
+    @SuppressWarnings("unchecked")
+    static ModelCodec<Object> codecFor(String name) {
+        switch (name) {
+            case "products":
+                return (ModelCodec<Object>) (ModelCodec<?>) ProductCodec.INSTANCE;
+            case "customers":
+                return (ModelCodec<Object>) (ModelCodec<?>) CustomerCodec.INSTANCE;
+            default:
+                throw new IllegalArgumentException("No codec for " + name);
+        }
+    }
+}
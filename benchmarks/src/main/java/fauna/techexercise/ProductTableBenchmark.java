@@ -0,0 +1,118 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * A large collection of products as Product objects (read with ProductCodec)
+ * against the struct-of-arrays ProductTable: building it from JSON and then
+ * scanning it for the stock value. products.json is repeated copies times to
+ * get a collection big enough for the heap layout to matter. Compare
+ * readObjects/readTable and scanObjects/scanTable on us/op, gc.alloc.rate.norm
+ * and gc.count:
+ *
+ *   java -jar target/benchmarks.jar ProductTableBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductTableBenchmark {
+
+    @Param({"1", "1000"})
+    public int copies;
+
+    private byte[] json;
+    private List<Product> products;
+    private ProductTable table;
+
+    @Setup
+    public void setUp() throws IOException {
+        ArrayNode array = NorthwindData.mapper.createArrayNode();
+        JsonNode original = NorthwindData.mapper.readTree(NorthwindData.file("products"));
+        for (int i = 0; i < copies; i++) {
+            array.addAll((ArrayNode) original);
+        }
+        json = NorthwindData.mapper.writeValueAsBytes(array);
+
+        products = readObjects();
+        table = readTable();
+    }
+
+    @Benchmark
+    public List<Product> readObjects() throws IOException {
+        List<Product> products = new ArrayList<>();
+        try (JsonArrayReader<Product> reader =
+                     new JsonArrayReader<>(NorthwindData.mapper.getFactory().createParser(json), ProductCodec.INSTANCE)) {
+            while (reader.hasNext()) {
+                products.add(reader.next());
+            }
+        }
+        return products;
+    }
+
+    @Benchmark
+    public ProductTable readTable() throws IOException {
+        try (JsonParser parser = NorthwindData.mapper.getFactory().createParser(json)) {
+            return ProductTable.read(parser).trim();
+        }
+    }
+
+    @Benchmark
+    public long scanObjects() {
+        long value = 0;
+        for (Product product : products) {
+            if (!product.isDiscontinued()) {
+                value += (long) product.getUnitPrice() * product.getUnitsInStock();
+            }
+        }
+        return value;
+    }
+
+    @Benchmark
+    public long scanTable() {
+        long value = 0;
+        ProductTable.Row row = table.row();
+        for (int i = 0; i < table.size(); i++) {
+            row.moveTo(i);
+            if (!row.isDiscontinued()) {
+                value += (long) row.getUnitPrice() * row.getUnitsInStock();
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+/*
+ * An AIMD concurrency limit: how many queries may be in flight at once, found
+ * at run time instead of configured.
+ *
+ * The limit starts low and, while queries keep coming back at close to the
+ * best latency seen, grows by one for every limit queries that complete (one
+ * per round trip). Before the first sign of trouble it grows by one per query
+ * instead, doubling every round trip (slow start). When FaunaDB throttles or
+ * times out, the limit is halved; when latency climbs past twice the baseline
+ * it is cut by a tenth. At most one cut is made per round trip, so one burst
+ * of bad responses counts once.
+ *
+ * acquire/release hand out the slots, record() feeds back the outcome of
+ * each query. They are separate so that a caller retrying a query can keep
+ * its slot while still reporting every attempt.
+ */
+public class AdaptiveLimit {
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BACKOFF_RATIO = 0.5;
+    private static final double LATENCY_BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    // guarded by this
+    private double limit;
+    private int inFlight = 0;
+    private boolean slowStart = true;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long lastDecrease;
+    private boolean decreased = false;
+
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Need 1 <= minLimit <= maxLimit, got " + minLimit + " and " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /*
+     * The outcome of one query: its latency, and whether FaunaDB pushed back
+     * (throttled, unavailable, timed out).
+     */
+    public synchronized void record(long latencyNanos, boolean dropped) {
+        long now = System.nanoTime();
+        if (dropped) {
+            decrease(now, Math.max(latencyNanos, baselineNanos == Long.MAX_VALUE ? latencyNanos : baselineNanos), BACKOFF_RATIO);
+            slowStart = false;
+            return;
+        }
+
+        if (latencyNanos < baselineNanos) {
+            baselineNanos = latencyNanos;
+        } else {
+            // let the baseline drift up slowly, the cluster's best case can change
+            baselineNanos += (latencyNanos - baselineNanos) / 256;
+        }
+
+        if (latencyNanos > baselineNanos * LATENCY_TOLERANCE) {
+            if (decrease(now, latencyNanos, LATENCY_BACKOFF_RATIO)) {
+                slowStart = false;
+            }
+        } else if (inFlight >= limit / 2) {
+            // only grow while the limit is what holds the caller back
+            limit = Math.min(maxLimit, limit + (slowStart ? 1.0 : 1.0 / limit));
+            notifyAll();
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private boolean decrease(long now, long roundTripNanos, double ratio) {
+        if (decreased && now - lastDecrease < roundTripNanos) {
+            return false;
+        }
+        decreased = true;
+        lastDecrease = now;
+        limit = Math.max(minLimit, limit * ratio);
+        return true;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "limit " + (int) limit + " (" + minLimit + ".." + maxLimit + "), in flight " + inFlight;
+    }
+}
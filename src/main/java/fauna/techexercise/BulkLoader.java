@@ -0,0 +1,463 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.faunadb.client.errors.BadRequestException;
+import com.faunadb.client.errors.FaunaException;
+import com.faunadb.client.errors.UnavailableException;
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * Pipelined, batching loader. Instead of waiting on every Create before sending
+ * the next one, up to maxInFlight queries are kept outstanding at once. The
+ * window is the back pressure: when it is full the reading thread blocks until
+ * a query completes, so a slow cluster never causes an unbounded pile of
+ * futures.
+ *
+ * With a batchSize above 1 each query carries a whole batch of records as a
+ * single transaction:
+ *
+ *   Foreach(Arr(record1, record2, ...), Lambda("x", Create(Class(name), Obj("data", Var("x")))))
+ *
+ * A batch is closed when it reaches batchSize records or when adding the next
+ * record would push its JSON payload over maxBatchBytes. If FaunaDB rejects a
+ * batch (too large, or a bad record inside it) the batch is split in half and
+ * each half retried, so the good records still land and the bad ones are
+ * narrowed down to a single record. A failed record is remembered in the
+ * report and the load carries on.
+ *
+ * upsertBy(index, key) turns every Create into an upsert on a natural key, so
+ * that loading the same records twice leaves one document per key (a load can
+ * also be given its own NaturalKey, for a loader shared between classes):
+ *
+ *   If(Exists(Match(Index(index), Select(key, x))),
+ *      Replace(Select("ref", Get(Match(Index(index), Select(key, x)))), Obj("data", x)),
+ *      Create(Class(name), Obj("data", x)))
+ *
+ * maxInFlight is an upper bound rather than a setting: the window is an
+ * AdaptiveLimit that starts small, grows while latency stays healthy and backs
+ * off when FaunaDB throttles (429, 503) or queries time out.
+ *
+ * Failed batches are retried up to MAX_RETRIES times with jittered exponential
+ * backoff, but only when sending them again can not write a record twice.
+ * Throttled (429) and unavailable (503) requests were turned away before they
+ * ran, so they are always retried. A timeout, a network error or a gateway
+ * error (502, 504) leaves it unknown whether the batch was written; those are
+ * retried only when upserting by natural key, where writing again is harmless.
+ * Otherwise the records are reported as failed, and not acknowledged to the
+ * checkpoint.
+ *
+ * Together with a LoadCheckpoint this makes a failed load resumable: records
+ * are acknowledged to the checkpoint as their batches complete, and a rerun
+ * starts from its mark, rewriting at most the batches that were in flight.
+ */
+public class BulkLoader {
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoader.class);
+
+    public static final int DEFAULT_MAX_BATCH_BYTES = 1024 * 1024;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final QueryExecutor executor;
+    private final int batchSize;
+    private final int maxBatchBytes;
+    private final AdaptiveLimit window;
+    private String upsertIndex;
+    private String upsertKey;
+
+    static final int MAX_RETRIES = 6;
+    private static final long RETRY_BASE_MILLIS = 100;
+    private static final long RETRY_MAX_MILLIS = 10000;
+
+    private static final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "bulk-loader-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Pending {
+        final long index;
+        final Expr data;
+
+        Pending(long index, Expr data) {
+            this.index = index;
+            this.data = data;
+        }
+    }
+
+    /*
+     * Everything a single load() call accumulates while its queries complete.
+     */
+    private static class LoadState {
+        final String className;
+        final Phaser outstanding = new Phaser(1);
+        final LatencyRecorder latencies = new LatencyRecorder();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong loaded = new AtomicLong();
+        final ConcurrentLinkedQueue<LoadReport.RecordFailure> failures = new ConcurrentLinkedQueue<>();
+        final LoadCheckpoint checkpoint;
+        final String upsertIndex;
+        final String upsertKey;
+
+        LoadState(String className, LoadCheckpoint checkpoint, String upsertIndex, String upsertKey) {
+            this.className = className;
+            this.checkpoint = checkpoint;
+            this.upsertIndex = upsertIndex;
+            this.upsertKey = upsertKey;
+        }
+
+        void acknowledge(List<Pending> batch) {
+            if (checkpoint != null) {
+                checkpoint.acknowledge(batch.get(0).index, batch.get(batch.size() - 1).index + 1);
+            }
+        }
+    }
+
+    public BulkLoader(QueryExecutor executor, int maxInFlight) {
+        this(executor, maxInFlight, 1, DEFAULT_MAX_BATCH_BYTES);
+    }
+
+    public BulkLoader(QueryExecutor executor, int maxInFlight, int batchSize, int maxBatchBytes) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1, got " + maxInFlight);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, got " + batchSize);
+        }
+        if (maxBatchBytes < 1) {
+            throw new IllegalArgumentException("maxBatchBytes must be at least 1, got " + maxBatchBytes);
+        }
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.window = new AdaptiveLimit(Math.min(maxInFlight, 4), 1, maxInFlight);
+    }
+
+    /*
+     * Writes each record as an upsert keyed on the given field of its data, found
+     * through indexName, a unique index with that field as its only term.
+     */
+    public BulkLoader upsertBy(String indexName, String keyField) {
+        this.upsertIndex = indexName;
+        this.upsertKey = keyField;
+        return this;
+    }
+
+    public LoadReport load(String className, Iterator<? extends Expr> records) throws InterruptedException {
+        return load(className, records, null);
+    }
+
+    /*
+     * Loads records into the class, acknowledging them to the checkpoint as they
+     * complete. The iterator must already be past the checkpoint's first
+     * getRecords() records, its first record is given that index.
+     */
+    public LoadReport load(String className, Iterator<? extends Expr> records, LoadCheckpoint checkpoint) throws InterruptedException {
+        return load(new LoadState(className, checkpoint, upsertIndex, upsertKey), records);
+    }
+
+    /*
+     * Same, upserting by naturalKey (if not null) instead of what upsertBy set,
+     * so that one loader, and its window, can be shared by loads of several classes.
+     */
+    public LoadReport load(String className,
+                           Iterator<? extends Expr> records,
+                           LoadCheckpoint checkpoint,
+                           NaturalKey naturalKey) throws InterruptedException {
+        return naturalKey == null
+                ? load(className, records, checkpoint)
+                : load(new LoadState(className, checkpoint, naturalKey.getIndexName(), naturalKey.getField()), records);
+    }
+
+    private LoadReport load(LoadState state, Iterator<? extends Expr> records) throws InterruptedException {
+        String className = state.className;
+        LoadCheckpoint checkpoint = state.checkpoint;
+
+        long start = System.nanoTime();
+        long recordIndex = checkpoint == null ? 0 : checkpoint.getRecords();
+        List<Pending> batch = new ArrayList<>(batchSize);
+        long batchBytes = 0;
+        while (records.hasNext()) {
+            Expr data = records.next();
+            int bytes = payloadSize(data);
+
+            if (!batch.isEmpty() && (batch.size() >= batchSize || batchBytes + bytes > maxBatchBytes)) {
+                dispatch(state, batch);
+                batch = new ArrayList<>(batchSize);
+                batchBytes = 0;
+            }
+            batch.add(new Pending(recordIndex++, data));
+            batchBytes += bytes;
+        }
+        if (!batch.isEmpty()) {
+            dispatch(state, batch);
+        }
+
+        // Wait for the tail of the window to drain
+        state.outstanding.awaitAdvanceInterruptibly(state.outstanding.arriveAndDeregister());
+
+        if (checkpoint != null) {
+            try {
+                checkpoint.save(checkpoint.getRecords() == recordIndex);
+            } catch (IOException e) {
+                logger.warn("Could not save checkpoint {}", checkpoint, e);
+            }
+        }
+
+        List<LoadReport.RecordFailure> failed = new ArrayList<>(state.failures);
+        LoadReport report = new LoadReport(className, state.loaded.get(), failed,
+                System.nanoTime() - start, state.latencies);
+        for (LoadReport.RecordFailure failure : failed) {
+            logger.warn("Failed to load {} {}", className, failure);
+        }
+        logger.debug("Loaded {} with {} retries, window {}", className, state.retries.get(), window);
+        return report;
+    }
+
+    private void dispatch(LoadState state, List<Pending> batch) throws InterruptedException {
+        window.acquire();
+        state.outstanding.register();
+        submit(state, batch, 0).whenComplete((ignored, error) -> {
+            window.release();
+            state.outstanding.arriveAndDeregister();
+        });
+    }
+
+    public AdaptiveLimit getWindow() {
+        return window;
+    }
+
+    /*
+     * Sends one batch and completes once every record in it has either been
+     * loaded or recorded as a failure. Rejected batches are bisected and the
+     * halves sent one after the other under the same window permit, and so are
+     * retries after a transient failure.
+     */
+    private CompletableFuture<Void> submit(LoadState state, List<Pending> batch, int attempt) {
+        long sent = System.nanoTime();
+        CompletableFuture<Value> future;
+        try {
+            future = executor.query(batchExpr(state, batch));
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+
+        return future.handle((result, error) -> {
+            long elapsed = System.nanoTime() - sent;
+            state.latencies.record(elapsed);
+            Throwable cause = error == null ? null : unwrap(error);
+            window.record(elapsed, cause != null && isThrottled(cause));
+            if (error == null) {
+                state.loaded.addAndGet(batch.size());
+                state.acknowledge(batch);
+                return null;
+            }
+            return cause;
+        }).thenCompose(error -> {
+            if (error == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (attempt < MAX_RETRIES && isTransient(error, state.upsertIndex != null)) {
+                long delay = backoffMillis(attempt);
+                state.retries.incrementAndGet();
+                logger.debug("Retrying {} batch of {} records in {} ms: {}", state.className, batch.size(), delay, error.toString());
+                CompletableFuture<Void> wait = new CompletableFuture<>();
+                retryScheduler.schedule(() -> wait.complete(null), delay, TimeUnit.MILLISECONDS);
+                return wait.thenCompose(ignored -> submit(state, batch, attempt + 1));
+            }
+
+            if (batch.size() > 1 && shouldSplit(error)) {
+                int middle = batch.size() / 2;
+                List<Pending> left = new ArrayList<>(batch.subList(0, middle));
+                List<Pending> right = new ArrayList<>(batch.subList(middle, batch.size()));
+                logger.debug("Splitting rejected {} batch of {} records: {}", state.className, batch.size(), error.toString());
+                return submit(state, left, 0).thenCompose(ignored -> submit(state, right, 0));
+            }
+
+            for (Pending pending : batch) {
+                state.failures.add(new LoadReport.RecordFailure(pending.index, error));
+            }
+            if (shouldSplit(error)) {
+                // rejected for its content, sending it again would not help
+                state.acknowledge(batch);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private Expr batchExpr(LoadState state, List<Pending> batch) {
+        String className = state.className;
+        if (state.upsertIndex != null) {
+            List<Expr> data = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                data.add(pending.data);
+            }
+            return Foreach(Arr(data), Lambda(Value("x"), upsertExpr(state, Var("x"))));
+        }
+
+        if (batch.size() == 1) {
+            return Create(
+                    Class(Value(className)),
+                    Obj("data", batch.get(0).data)
+            );
+        }
+
+        List<Expr> data = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            data.add(pending.data);
+        }
+        return Foreach(
+                Arr(data),
+                Lambda(Value("x"),
+                        Create(
+                                Class(Value(className)),
+                                Obj("data", Var("x"))
+                        )
+                )
+        );
+    }
+
+    private Expr upsertExpr(LoadState state, Expr data) {
+        Expr existing = Match(Index(Value(state.upsertIndex)), Select(Value(state.upsertKey), data));
+        return If(
+                Exists(existing),
+                Replace(Select(Value("ref"), Get(existing)), Obj("data", data)),
+                Create(Class(Value(state.className)), Obj("data", data))
+        );
+    }
+
+    /*
+     * Serialized size of one record. Only needed when batching; when every query
+     * carries a single record there is nothing to split, so skip the work.
+     */
+    private int payloadSize(Expr data) {
+        if (batchSize == 1) {
+            return 0;
+        }
+        try {
+            return mapper.writeValueAsBytes(data).length;
+        } catch (JsonProcessingException e) {
+            return 0;   // let FaunaDB report the problem against the record
+        }
+    }
+
+    /*
+     * A batch is worth splitting when FaunaDB rejected its content (payload too
+     * large, or one bad record failing the whole transaction). Anything else, like
+     * a network failure, would fail the halves the same way.
+     */
+    static boolean shouldSplit(Throwable error) {
+        if (error instanceof BadRequestException) {
+            return true;
+        }
+        String message = String.valueOf(error.getMessage()).toLowerCase();
+        return message.contains("413") || message.contains("too large");
+    }
+
+    /*
+     * FaunaDB telling us to slow down: throttled (429), unavailable or overloaded
+     * (502, 503, 504), or a query that did not come back in time. Decided by
+     * exception type and HTTP status only; a rejected request (400) never is,
+     * whatever its message says.
+     */
+    static boolean isThrottled(Throwable error) {
+        if (error instanceof BadRequestException) {
+            return false;
+        }
+        if (error instanceof UnavailableException || error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof FaunaException) {
+            switch (((FaunaException) error).status()) {
+                case 429:
+                case 502:
+                case 503:
+                case 504:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Failures that say nothing about the records, so sending them again may work
+     * and is safe: always when FaunaDB turned the query away before running it,
+     * and when the outcome is unknown only if the query is idempotent. Rejected
+     * content goes to the split path instead.
+     */
+    static boolean isTransient(Throwable error, boolean idempotent) {
+        if (error instanceof BadRequestException) {
+            return false;
+        }
+        if (error instanceof FaunaException) {
+            switch (((FaunaException) error).status()) {
+                case 429:
+                case 503:
+                    return true;
+                case 502:
+                case 504:
+                    return idempotent;
+                default:
+                    return false;
+            }
+        }
+        return idempotent && (error instanceof TimeoutException || error instanceof IOException);
+    }
+
+    /*
+     * Full jitter: a random delay between 0 and base * 2^attempt, capped.
+     */
+    static long backoffMillis(int attempt) {
+        long ceiling = Math.min(RETRY_MAX_MILLIS, RETRY_BASE_MILLIS << Math.min(attempt, 20));
+        return ThreadLocalRandom.current().nextLong(0, ceiling + 1);
+    }
+
+    static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Field;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * Keeps an EntityRepository's cache in step with FaunaDB by watching document
+ * timestamps instead of relying on a TTL. The class needs an index listing its
+ * documents newest first,
+ *
+ *   CreateIndex({name: "products_by_ts", source: Class("products"),
+ *                values: [{field: ["ts"], reverse: true}, {field: ["ref"]}]})
+ *
+ * (see changesIndex()). Each poll pages from the head of that index until it
+ * reaches the high-water ts of the previous poll, which is normally a single
+ * query returning just the documents changed since. A cached entry is evicted,
+ * or reloaded when refresh is set, only if the change is newer than the ts it
+ * was read at. The first poll only records the high-water mark, so start the
+ * invalidator before filling the cache.
+ *
+ * Deletes remove the document from the index rather than moving it to the head,
+ * so they are not seen; keep a TTL on the cache if documents can be deleted.
+ */
+public class CacheInvalidator<K> {
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidator.class);
+
+    private final QueryExecutor executor;
+    private final EntityRepository<K, ?> repository;
+    private final String indexName;
+    private final boolean refresh;
+    private final int pageSize;
+
+    private long highWater = -1;
+    private long polls = 0;
+    private long invalidated = 0;
+    private ScheduledFuture<?> scheduled;
+
+    public CacheInvalidator(QueryExecutor executor,
+                            EntityRepository<K, ?> repository,
+                            String indexName,
+                            boolean refresh,
+                            int pageSize) {
+        this.executor = executor;
+        this.repository = repository;
+        this.indexName = indexName;
+        this.refresh = refresh;
+        this.pageSize = pageSize;
+    }
+
+    /*
+     * The <class>_by_ts index a CacheInvalidator for the class polls.
+     */
+    public static Schema.IndexDef changesIndex(String className) {
+        return Schema.index(className + "_by_ts", className)
+                .reverseValue("ts")
+                .value("ref");
+    }
+
+    public synchronized void start(ScheduledExecutorService scheduler, long intervalMillis) {
+        if (scheduled != null) {
+            throw new IllegalStateException("Already started");
+        }
+        scheduled = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (RuntimeException e) {
+                logger.warn("Polling {} for changes failed", indexName, e);
+            }
+        }, 0, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+    }
+
+    /*
+     * Checks for changes once and returns the number of cache entries evicted or refreshed.
+     */
+    public synchronized int poll() {
+        List<Value> changes = changedSince(highWater);
+        polls++;
+        if (changes.isEmpty()) {
+            return 0;
+        }
+
+        long previous = highWater;
+        highWater = changes.get(0).at(0).to(Long.class).get();
+        if (previous < 0) {
+            logger.debug("Watching {} from ts {}", indexName, highWater);
+            return 0;
+        }
+
+        EntityCache<K, ?> cache = repository.getCache();
+        int count = 0;
+        for (Value change : changes) {
+            long ts = change.at(0).to(Long.class).get();
+            K key = cache.keyFor(change.at(1));
+            if (key == null) {
+                continue;
+            }
+            EntityCache.Entry<?> entry = cache.getEntry(key);
+            if (entry == null || entry.getTs() >= ts) {
+                continue;
+            }
+
+            if (refresh) {
+                repository.refresh(key).whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        logger.warn("Refreshing {} {} failed", repository.getClassName(), key, BulkLoader.unwrap(error));
+                    }
+                });
+            } else {
+                cache.invalidate(key);
+            }
+            count++;
+        }
+        invalidated += count;
+        logger.debug("{} of {} changes in {} affected the cache", count, changes.size(), repository.getClassName());
+        return count;
+    }
+
+    public synchronized long getHighWater() {
+        return highWater;
+    }
+
+    public synchronized long getPolls() {
+        return polls;
+    }
+
+    public synchronized long getInvalidated() {
+        return invalidated;
+    }
+
+    /*
+     * The [ts, ref] rows newer than since, newest first. With no high-water mark
+     * yet only the newest row is fetched.
+     */
+    private List<Value> changedSince(long since) {
+        List<Value> changes = new ArrayList<>();
+        Expr after = null;
+        int size = since < 0 ? 1 : pageSize;
+        while (true) {
+            Expr page = after == null
+                    ? Paginate(Match(Index(indexName))).size(Value(size))
+                    : Paginate(Match(Index(indexName))).after(after).size(Value(size));
+            Value result = executor.query(page).join();
+
+            for (Value row : result.at("data").asCollectionOf(Value.class).get()) {
+                if (row.at(0).to(Long.class).get() <= since) {
+                    return changes;
+                }
+                changes.add(row);
+            }
+
+            Optional<Value> cursor = result.getOptional(Field.at("after"));
+            if (since < 0 || !cursor.isPresent()) {
+                return changes;
+            }
+            after = cursor.get();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.faunadb.client.types.Value;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * A Category without its description, read from a covering index.
+ */
+public class CategorySummary {
+    static final CoveringIndex<CategorySummary> SUMMARIES = new CoveringIndex<>(
+            "categories_summary", "categories",
+            Arrays.asList("categoryID", "name"),
+            CategorySummary::fromTuple);
+
+    private final int categoryID;
+    private final String name;
+    private final Value ref;
+
+    public CategorySummary(int categoryID, String name, Value ref) {
+        this.categoryID = categoryID;
+        this.name = name;
+        this.ref = ref;
+    }
+
+    static CategorySummary fromTuple(List<Value> tuple) {
+        return new CategorySummary(
+                tuple.get(0).to(Long.class).get().intValue(),
+                tuple.get(1).to(String.class).get(),
+                tuple.get(2));
+    }
+
+    public int getCategoryID() {
+        return categoryID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Value getRef() {
+        return ref;
+    }
+
+    @Override
+    public String toString() {
+        return categoryID + " " + name;
+    }
+}
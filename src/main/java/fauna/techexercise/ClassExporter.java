@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import com.faunadb.client.types.Value;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static com.faunadb.client.query.Language.*;
+
+/******************************************************************************
+ *  Exports classes to newline delimited JSON, one document's data per line,
+ *  the way they were loaded:
+ *
+ *  ClassExporter [directory] [gzip] [class ...]
+ *
+ *  writes <directory>/<class>.ndjson (or .ndjson.gz) for categories, products,
+ *  customers and orders by default. Each class is read through its <class>_all
+ *  index with a PageScanner, which fetches the next page while the current one
+ *  is written, and each document goes straight from the driver's Value to a
+ *  JsonGenerator over a buffered file stream. Nothing but the current pages is
+ *  held in memory, whatever the size of the class.
+ *
+ *  Columnar output (Parquet, Arrow) and zstd would need libraries this project
+ *  does not depend on; gzip comes with the JDK.
+ *****************************************************************************/
+public class ClassExporter {
+    private static final Logger logger = LoggerFactory.getLogger(ClassExporter.class);
+
+    private static final int BUFFER_BYTES = 256 * 1024;
+
+    private final QueryExecutor executor;
+    private final JsonFactory factory = new JsonFactory();
+    private final int pageSize;
+
+    public ClassExporter(QueryExecutor executor, int pageSize) {
+        this.executor = executor;
+        this.pageSize = pageSize;
+    }
+
+    /*
+     * Exports the class to the file, gzipped if the name ends in .gz. Returns the number of documents.
+     */
+    public long export(String className, Path target) throws IOException {
+        long start = System.nanoTime();
+        long count;
+        try (OutputStream file = Files.newOutputStream(target)) {
+            if (target.getFileName().toString().endsWith(".gz")) {
+                try (GZIPOutputStream gzip = new GZIPOutputStream(file, BUFFER_BYTES)) {
+                    count = export(className, gzip);
+                }
+            } else {
+                count = export(className, file);
+            }
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long bytes = Files.size(target);
+        logger.info("Exported {} {} documents to {}, {} KB in {} ms", count, className, target, bytes / 1024, millis);
+        return count;
+    }
+
+    /*
+     * Writes the class as NDJSON to out, which is flushed but not closed.
+     */
+    public long export(String className, OutputStream out) throws IOException {
+        PageScanner scanner = PageScanner.builder(executor, Match(Index(className + "_all")))
+                .withRowLambda(PageScanner.DOCUMENT_DATA)
+                .withPageSize(pageSize)
+                .build();
+        ScanProgress progress = new ScanProgress(logger, className, scanner, 10000, 1000);
+
+        OutputStream buffered = new BufferedOutputStream(out, BUFFER_BYTES);
+        try (JsonGenerator generator = factory.createGenerator(buffered)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            while (scanner.hasNext()) {
+                Value document = scanner.next();
+                JsonValueEncoder.write(generator, document);
+                progress.accept(document);
+            }
+            if (progress.getRows() > 0) {
+                generator.writeRaw('\n');
+            }
+        }
+        buffered.flush();
+        progress.finish();
+        return progress.getRows();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "./export");
+        boolean gzip = args.length > 1 && Boolean.parseBoolean(args[1]);
+        List<String> classes = args.length > 2
+                ? Arrays.asList(args).subList(2, args.length)
+                : Arrays.asList("categories", "products", "customers", "orders");
+
+        Files.createDirectories(directory);
+        try (ManagedClient client = FaunaClientFactory.load().open()) {
+            ClassExporter exporter = new ClassExporter(client, 1000);
+            for (String className : classes) {
+                exporter.export(className, directory.resolve(className + (gzip ? ".ndjson.gz" : ".ndjson")));
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+/******************************************************************************
+ *  An in-memory, column oriented copy of the order details of Northwind, for
+ *  reports like revenue per product that would otherwise be a full scan plus
+ *  a Get per order in FaunaDB. There is one row per order line, and each column
+ *  is a primitive array (orderID, productID, quantity, unitPrice, discount) or
+ *  a dictionary encoded string (customerID, country, city: an int code per row
+ *  plus the distinct values once).
+ *
+ *  It is built from orders.json or from a ClassExporter NDJSON export of the
+ *  orders class (optionally gzipped), and queried with
+ *
+ *  snapshot.query()
+ *          .where(row -> snapshot.country.code(row) == usa)
+ *          .groupBy(snapshot.productID)
+ *          .sum(snapshot::revenue);
+ *
+ *  Filtering and grouping run over a parallel IntStream of row numbers, each
+ *  thread filling its own map of primitive accumulators.
+ *
+ *  ColumnarSnapshot [orders.json | orders.ndjson[.gz]]
+ *****************************************************************************/
+public class ColumnarSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarSnapshot.class);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /*
+     * A string column stored as one int code per row and the distinct values once.
+     */
+    public static class DictionaryColumn implements IntUnaryOperator {
+        private final int[] codes;
+        private final String[] values;
+
+        DictionaryColumn(int[] codes, String[] values) {
+            this.codes = codes;
+            this.values = values;
+        }
+
+        /*
+         * The code of the row's value, what groupBy keys on.
+         */
+        public int code(int row) {
+            return codes[row];
+        }
+
+        @Override
+        public int applyAsInt(int row) {
+            return codes[row];
+        }
+
+        public String value(int row) {
+            return values[codes[row]];
+        }
+
+        public String decode(int code) {
+            return values[code];
+        }
+
+        /*
+         * The code of the value, or -1 if no row has it.
+         */
+        public int codeOf(String value) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].equals(value)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        public int cardinality() {
+            return values.length;
+        }
+    }
+
+    /*
+     * A filter over the rows, narrowed with where() and grouped with groupBy().
+     */
+    public class Query {
+        private final IntPredicate filter;
+
+        private Query(IntPredicate filter) {
+            this.filter = filter;
+        }
+
+        public Query where(IntPredicate predicate) {
+            return new Query(filter == null ? predicate : filter.and(predicate));
+        }
+
+        public Grouped groupBy(IntUnaryOperator key) {
+            return new Grouped(this, key);
+        }
+
+        public long count() {
+            return rows().count();
+        }
+
+        public double sum(IntToDoubleFunction value) {
+            return rows().mapToDouble(value::applyAsDouble).sum();
+        }
+
+        IntStream rows() {
+            IntStream rows = IntStream.range(0, size).parallel();
+            return filter == null ? rows : rows.filter(filter);
+        }
+    }
+
+    /*
+     * A query with its rows grouped by an int key: a plain int column, or the codes of a DictionaryColumn.
+     */
+    public class Grouped {
+        private final Query query;
+        private final IntUnaryOperator key;
+
+        private Grouped(Query query, IntUnaryOperator key) {
+            this.query = query;
+            this.key = key;
+        }
+
+        public Map<Integer, Double> sum(IntToDoubleFunction value) {
+            Map<Integer, double[]> sums = query.rows().collect(
+                    HashMap::new,
+                    (map, row) -> map.computeIfAbsent(key.applyAsInt(row), k -> new double[1])[0] += value.applyAsDouble(row),
+                    (left, right) -> right.forEach((k, sum) -> left.computeIfAbsent(k, x -> new double[1])[0] += sum[0]));
+            Map<Integer, Double> result = new HashMap<>(sums.size());
+            sums.forEach((k, sum) -> result.put(k, sum[0]));
+            return result;
+        }
+
+        public Map<Integer, Long> count() {
+            Map<Integer, long[]> counts = query.rows().collect(
+                    HashMap::new,
+                    (map, row) -> map.computeIfAbsent(key.applyAsInt(row), k -> new long[1])[0]++,
+                    (left, right) -> right.forEach((k, count) -> left.computeIfAbsent(k, x -> new long[1])[0] += count[0]));
+            Map<Integer, Long> result = new HashMap<>(counts.size());
+            counts.forEach((k, count) -> result.put(k, count[0]));
+            return result;
+        }
+    }
+
+    private final int size;
+    public final int[] orderID;
+    public final int[] productID;
+    public final int[] quantity;
+    public final double[] unitPrice;
+    public final double[] discount;
+    public final DictionaryColumn customerID;
+    public final DictionaryColumn country;
+    public final DictionaryColumn city;
+
+    private ColumnarSnapshot(Builder builder) {
+        this.size = builder.size;
+        this.orderID = Arrays.copyOf(builder.orderID, size);
+        this.productID = Arrays.copyOf(builder.productID, size);
+        this.quantity = Arrays.copyOf(builder.quantity, size);
+        this.unitPrice = Arrays.copyOf(builder.unitPrice, size);
+        this.discount = Arrays.copyOf(builder.discount, size);
+        this.customerID = builder.customerID.build(size);
+        this.country = builder.country.build(size);
+        this.city = builder.city.build(size);
+    }
+
+    /*
+     * Reads orders.json (a JSON array) or an NDJSON export of orders, gzipped if it ends in .gz.
+     */
+    public static ColumnarSnapshot fromOrders(File file) throws IOException {
+        Builder builder = new Builder();
+        try (InputStream in = open(file);
+             MappingIterator<JsonNode> orders = mapper.readerFor(JsonNode.class).readValues(in)) {
+            while (orders.hasNext()) {
+                builder.addOrder(orders.next());
+            }
+        }
+        return new ColumnarSnapshot(builder);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Query query() {
+        return new Query(null);
+    }
+
+    /*
+     * What an order line brought in, after discount.
+     */
+    public double revenue(int row) {
+        return unitPrice[row] * quantity[row] * (1 - discount[row]);
+    }
+
+    public IntUnaryOperator column(int[] values) {
+        return row -> values[row];
+    }
+
+    private static InputStream open(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        return file.getName().endsWith(".gz") ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    /*
+     * Grows the columns one order line at a time.
+     */
+    private static class Builder {
+        int size = 0;
+        int[] orderID = new int[1024];
+        int[] productID = new int[1024];
+        int[] quantity = new int[1024];
+        double[] unitPrice = new double[1024];
+        double[] discount = new double[1024];
+        final DictionaryBuilder customerID = new DictionaryBuilder();
+        final DictionaryBuilder country = new DictionaryBuilder();
+        final DictionaryBuilder city = new DictionaryBuilder();
+
+        void addOrder(JsonNode order) {
+            JsonNode address = order.path("shipAddress");
+            for (JsonNode detail : order.path("details")) {
+                if (size == orderID.length) {
+                    int capacity = size * 2;
+                    orderID = Arrays.copyOf(orderID, capacity);
+                    productID = Arrays.copyOf(productID, capacity);
+                    quantity = Arrays.copyOf(quantity, capacity);
+                    unitPrice = Arrays.copyOf(unitPrice, capacity);
+                    discount = Arrays.copyOf(discount, capacity);
+                }
+                orderID[size] = order.path("orderID").asInt();
+                productID[size] = detail.path("productID").asInt();
+                quantity[size] = detail.path("quantity").asInt();
+                unitPrice[size] = detail.path("unitPrice").asDouble();
+                discount[size] = detail.path("discount").asDouble();
+                customerID.add(size, order.path("customerID").asText());
+                country.add(size, address.path("country").asText());
+                city.add(size, address.path("city").asText());
+                size++;
+            }
+        }
+    }
+
+    private static class DictionaryBuilder {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int[] rows = new int[1024];
+
+        void add(int row, String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            if (row == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[row] = code;
+        }
+
+        DictionaryColumn build(int size) {
+            return new DictionaryColumn(Arrays.copyOf(rows, size), values.toArray(new String[0]));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        File file = new File(args.length > 0 ? args[0] : "./northwinds-json/orders.json");
+
+        long start = System.nanoTime();
+        ColumnarSnapshot snapshot = ColumnarSnapshot.fromOrders(file);
+        logger.info("Loaded {} order lines from {} in {} ms", snapshot.size(), file, (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        Map<Integer, Double> revenueByProduct = snapshot.query()
+                .groupBy(snapshot.column(snapshot.productID))
+                .sum(snapshot::revenue);
+        logger.info("Revenue per product, top 5 of {}, in {} ms: {}", revenueByProduct.size(),
+                (System.nanoTime() - start) / 1_000_000, top(revenueByProduct, 5, String::valueOf));
+
+        start = System.nanoTime();
+        Map<Integer, Double> revenueByCountry = snapshot.query()
+                .groupBy(snapshot.country)
+                .sum(snapshot::revenue);
+        logger.info("Revenue per country, top 5 of {}, in {} ms: {}", revenueByCountry.size(),
+                (System.nanoTime() - start) / 1_000_000, top(revenueByCountry, 5, snapshot.country::decode));
+
+        int usa = snapshot.country.codeOf("USA");
+        start = System.nanoTime();
+        Map<Integer, Long> linesByCity = snapshot.query()
+                .where(row -> snapshot.country.code(row) == usa)
+                .groupBy(snapshot.city)
+                .count();
+        logger.info("Order lines per US city, {} cities, in {} ms: {}", linesByCity.size(),
+                (System.nanoTime() - start) / 1_000_000, top(linesByCity, 5, snapshot.city::decode));
+    }
+
+    private static <N extends Number> Map<String, N> top(Map<Integer, N> values, int n, IntFunction<String> label) {
+        Map<String, N> top = new LinkedHashMap<>();
+        values.entrySet().stream()
+                .sorted((a, b) -> Double.compare(b.getValue().doubleValue(), a.getValue().doubleValue()))
+                .limit(n)
+                .forEach(entry -> top.put(label.apply(entry.getKey()), entry.getValue()));
+        return top;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * An index whose values carry the fields a list view needs, so a page of the
+ * index is the whole answer. Scanning it is one read per page instead of
+ * Map(Paginate(...), Lambda(x, Select(data, Get(x)))), which reads every
+ * document on the page as well. E.g.
+ *
+ *   CreateIndex({name: "products_summary", source: Class("products"),
+ *                values: [{field: ["data", "productID"]}, {field: ["data", "name"]},
+ *                         {field: ["data", "unitPrice"]}, {field: ["data", "categoryID"]},
+ *                         {field: ["ref"]}]})
+ *
+ * The ref always comes last: it keeps documents with equal fields apart, and
+ * lets a projection be turned back into its document when needed. Rows are
+ * decoded by the projection's Decoder, straight from the tuple without any
+ * reflection. An index can also have one term, in which case scan() takes its value.
+ */
+public class CoveringIndex<T> {
+
+    @FunctionalInterface
+    public interface Decoder<T> {
+        /*
+         * The tuple holds the index values in order, the ref last.
+         */
+        T decode(List<Value> tuple);
+    }
+
+    private final String name;
+    private final String source;
+    private final String termField;
+    private final List<String> fields;
+    private final Decoder<T> decoder;
+
+    public CoveringIndex(String name, String source, List<String> fields, Decoder<T> decoder) {
+        this(name, source, null, fields, decoder);
+    }
+
+    public CoveringIndex(String name, String source, String termField, List<String> fields, Decoder<T> decoder) {
+        this.name = name;
+        this.source = source;
+        this.termField = termField;
+        this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+        this.decoder = decoder;
+    }
+
+    /*
+     * The index definition, for Schema.withIndex().
+     */
+    public Schema.IndexDef definition() {
+        Schema.IndexDef index = Schema.index(name, source);
+        if (termField != null) {
+            index.term("data", termField);
+        }
+        for (String field : fields) {
+            index.value("data", field);
+        }
+        return index.value("ref");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /*
+     * Every entry of an index without terms.
+     */
+    public Stream<T> scan(QueryExecutor executor, int pageSize) {
+        if (termField != null) {
+            throw new IllegalStateException("Index " + name + " has a term on " + termField + ", pass its value");
+        }
+        return scan(executor, Match(Index(name)), pageSize);
+    }
+
+    /*
+     * The entries for one value of the term.
+     */
+    public Stream<T> scan(QueryExecutor executor, Expr term, int pageSize) {
+        if (termField == null) {
+            throw new IllegalStateException("Index " + name + " has no terms");
+        }
+        return scan(executor, Match(Index(name), term), pageSize);
+    }
+
+    public T decode(Value row) {
+        return decoder.decode(new ArrayList<>(row.asCollectionOf(Value.class).get()));
+    }
+
+    /*
+     * A numeric index value, whether it was stored as a long or a double.
+     */
+    static double number(Value value) {
+        if (value instanceof Value.DoubleV) {
+            return value.to(Double.class).get();
+        }
+        return value.to(Long.class).get();
+    }
+
+    private Stream<T> scan(QueryExecutor executor, Expr set, int pageSize) {
+        return PageScanner.builder(executor, set)
+                .withRowLambda(null)
+                .withPageSize(pageSize)
+                .build()
+                .stream()
+                .map(this::decode);
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import com.faunadb.client.types.Value;
+import com.faunadb.client.types.Value.NullV;
+import com.faunadb.client.types.Value.ObjectV;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static fauna.techexercise.ModelCodec.*;
+
+/*
+ * Customer and its nested Address without reflection, see ModelCodec.
+ */
+public class CustomerCodec implements ModelCodec<Customer> {
+    public static final CustomerCodec INSTANCE = new CustomerCodec();
+
+    @Override
+    public Customer read(JsonParser parser) throws IOException {
+        startObject(parser);
+        Customer customer = new Customer();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch (name) {
+                case "customerID":
+                    customer.setCustomerID(parser.getValueAsString());
+                    break;
+                case "companyName":
+                    customer.setCompanyName(parser.getValueAsString());
+                    break;
+                case "contactName":
+                    customer.setContactName(parser.getValueAsString());
+                    break;
+                case "contactTitle":
+                    customer.setContactTitle(parser.getValueAsString());
+                    break;
+                case "address":
+                    customer.setAddress(parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : readAddress(parser));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return customer;
+    }
+
+    @Override
+    public void write(JsonGenerator generator, Customer customer) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, "customerID", customer.getCustomerID());
+        writeString(generator, "companyName", customer.getCompanyName());
+        writeString(generator, "contactName", customer.getContactName());
+        writeString(generator, "contactTitle", customer.getContactTitle());
+        generator.writeFieldName("address");
+        Address address = customer.getAddress();
+        if (address == null) {
+            generator.writeNull();
+        } else {
+            generator.writeStartObject();
+            writeString(generator, "street", address.getStreet());
+            writeString(generator, "city", address.getCity());
+            writeString(generator, "region", address.getRegion());
+            writeString(generator, "postalCode", address.getPostalCode());
+            writeString(generator, "country", address.getCountry());
+            writeString(generator, "phone", address.getPhone());
+            generator.writeEndObject();
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public Customer decode(Value data) {
+        Map<String, Value> fields = data.asMapOf(Value.class).get();
+        Value address = fields.get("address");
+        return new Customer(
+                stringValue(fields.get("customerID")),
+                stringValue(fields.get("companyName")),
+                stringValue(fields.get("contactName")),
+                stringValue(fields.get("contactTitle")),
+                address instanceof ObjectV ? decodeAddress(address) : null
+        );
+    }
+
+    @Override
+    public Value encode(Customer customer) {
+        Map<String, Value> fields = new LinkedHashMap<>();
+        fields.put("customerID", stringOf(customer.getCustomerID()));
+        fields.put("companyName", stringOf(customer.getCompanyName()));
+        fields.put("contactName", stringOf(customer.getContactName()));
+        fields.put("contactTitle", stringOf(customer.getContactTitle()));
+        fields.put("address", customer.getAddress() == null ? NullV.NULL : encodeAddress(customer.getAddress()));
+        return new ObjectV(fields);
+    }
+
+    private static Address readAddress(JsonParser parser) throws IOException {
+        startObject(parser);
+        Address address = new Address();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch (name) {
+                case "street":
+                    address.setStreet(parser.getValueAsString());
+                    break;
+                case "city":
+                    address.setCity(parser.getValueAsString());
+                    break;
+                case "region":
+                    address.setRegion(parser.getValueAsString());
+                    break;
+                case "postalCode":
+                    // some postal codes are plain numbers in the data
+                    address.setPostalCode(parser.getValueAsString());
+                    break;
+                case "country":
+                    address.setCountry(parser.getValueAsString());
+                    break;
+                case "phone":
+                    address.setPhone(parser.getValueAsString());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return address;
+    }
+
+    private static Address decodeAddress(Value data) {
+        Map<String, Value> fields = data.asMapOf(Value.class).get();
+        return new Address(
+                stringValue(fields.get("street")),
+                stringValue(fields.get("city")),
+                stringValue(fields.get("region")),
+                stringValue(fields.get("postalCode")),
+                stringValue(fields.get("country")),
+                stringValue(fields.get("phone"))
+        );
+    }
+
+    private static Value encodeAddress(Address address) {
+        Map<String, Value> fields = new LinkedHashMap<>();
+        fields.put("street", stringOf(address.getStreet()));
+        fields.put("city", stringOf(address.getCity()));
+        fields.put("region", stringOf(address.getRegion()));
+        fields.put("postalCode", stringOf(address.getPostalCode()));
+        fields.put("country", stringOf(address.getCountry()));
+        fields.put("phone", stringOf(address.getPhone()));
+        return new ObjectV(fields);
+    }
+}
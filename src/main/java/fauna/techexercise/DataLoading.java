@@ -46,11 +46,15 @@ import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.*;
 
 import java.io.File;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /*
  * These are the required imports for Fauna.
@@ -60,23 +64,56 @@ import java.util.Iterator;
  *
  */
 import com.faunadb.client.*;
+import com.faunadb.client.query.Expr;
 import com.faunadb.client.types.*;
 import static com.faunadb.client.query.Language.*;
 
 public class DataLoading {
     /*
-     * Connection variables:
-     * Endpoint will depend ow whether you are using cloud or local
-     *  - https://db.fauuna.com -- for Fauna DB Cloud
-     *  - http://localhost:8443 -- if you are using a local docker instance
-     *
-     * Secret is the DD specific secret that you generated either from the
-     * GettingStarted.java execution or the running the above fauna command
-     * line commands.
+     * Most queries the pipelined and batched loaders keep outstanding at once. They
+     * find their own window below this, see AdaptiveLimit. Can be overridden with
+     * the second command line argument.
      */
-//    private static String endpoint = "https://db.fauna.com";
-    private static String endpoint = "http://localhost:8443";
-    private static String secret = "fnAC9FsHMiACAHMG0pNOe93XQ9TVVdHZMZwPbFJ0";
+    private static int maxInFlight = 32;
+
+    /*
+     * Records packed into each transaction by the batched loader, and the largest
+     * request payload a batch may grow to before it is sent.
+     */
+    private static int batchSize = 100;
+    private static int maxBatchBytes = BulkLoader.DEFAULT_MAX_BATCH_BYTES;
+
+    /*
+     * How the bulk loaders turn JSON into query data:
+     *  - pojo   : bind each element to its model class and encode it with Value(pojo)
+     *  - direct : encode the JSON tokens straight into a Value tree (JsonValueEncoder),
+     *             using the model class, if there is one, only to validate the record
+     */
+    private static String encoding = "pojo";
+
+    /*
+     * The northwind mode loads every file in dataDirectory. Files larger than
+     * partitionThresholdBytes are split across this many workers.
+     */
+    private static String dataDirectory = "./northwinds-json";
+    private static int partitions = 4;
+    private static long partitionThresholdBytes = 256 * 1024;
+
+    // maximum time to wait for the class indexes to build, 2 minutes
+    private static long indexTimeoutMillis = 120000;
+
+    /*
+     * Where the pipelined, batched and northwind loads keep their checkpoints, and how often
+     * they are saved while a load runs.
+     */
+    private static String checkpointDirectory = "./checkpoints";
+    private static long checkpointIntervalMillis = 2000;
+
+    /*
+     * The database being loaded (FaunaClientFactory.getTarget()), checkpoints
+     * written for another one are not resumed.
+     */
+    private static String checkpointTarget = "";
 
     private static final Logger logger = LoggerFactory.getLogger(DataLoading.class);
 
@@ -89,96 +126,208 @@ public class DataLoading {
         return mapper;
     }
 
-    private static String toPrettyJson(Value value) throws JsonProcessingException {
-        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(value);
+    /*
+     * ObjectReaders are immutable and thread safe, and building one means looking
+     * up the deserializer for the class. Build it once per target class and reuse it.
+     */
+    private static final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private static ObjectReader readerFor(Class<?> dataClass) {
+        return readers.computeIfAbsent(dataClass, mapper::readerFor);
     }
 
-    private static void createClass(FaunaClient client, String className) throws Exception {
+    private static void loadData(QueryExecutor client,
+                                 Class dataClass,
+                                 String dataTypeName,
+                                 String jsonFilePath) throws Exception {
         /*
-         * Create the class to store the data instances
+         * The file is streamed one element at a time, so only the record being
+         * sent is ever held in memory, however big the file is.
          */
-        Value result = client.query(
-                CreateClass(Obj("name", Value(className)))
-        ).get();
-        logger.info("Created data class : {} :: \n{}", className, toPrettyJson(result));
+        long count = 0;
+        try (JsonArrayReader<?> reader = JsonArrayReader.open(readerFor(dataClass), new File(jsonFilePath))) {
+            while (reader.hasNext()) {
+                Object data = reader.next();
+
+                client.query(
+                        Create(
+                                Class(Value(dataTypeName)),
+                                Obj("data", Value(data))
+                        )
+                ).get();    // this makes the call Async. We could always catch the futures and check later.
+                count++;
+            }
+        }
+        logger.info("Loaded {} {} records.", count, dataTypeName);
+
     }
 
-    private static void createClassIndex(FaunaClient client, String className) throws Exception {
+    private static void loadDataBulk(QueryExecutor executor,
+                                     int recordsPerQuery,
+                                     Class dataClass,
+                                     String dataTypeName,
+                                     String jsonFilePath) throws Exception {
         /*
-         * Create a class level index. This is really a convenience feature that lets us
-         * evaluate if the data loaded properly.
+         * Same input as loadData, but the Creates are handed to the BulkLoader which
+         * keeps maxInFlight of them on the wire instead of waiting on each one, and
+         * packs up to recordsPerQuery records into each of those queries.
          */
-        String classIndexName = className + "_all";
-        Value result = client.query(
-                // This index supports primary key access. Equality constraints only
-                    CreateIndex(
-                            Obj(
-                                    "name", Value(classIndexName),
-                                    "source", Class(Value(className))
-                            )
-                    )
-        ).get();
-        logger.info("Created {} index :: \n{}", classIndexName, toPrettyJson(result));
-    }
+        BulkLoader loader = new BulkLoader(executor, maxInFlight, recordsPerQuery, maxBatchBytes);
 
-    private static void loadData(FaunaClient client,
-                                 Class dataClass,
-                                 String dataTypeName,
-                                 String jsonFilePath) throws Exception {
-        //
-        // This is cheesy. If the file was really big you would stream it
-        // I am cheating by reading the whole thing and then parsing
-        //
-        JsonNode rootNode = mapper.readTree(new File(jsonFilePath));
-        Iterator<JsonNode> it = rootNode.elements();
+        /*
+         * Progress is checkpointed to a file next to the others in checkpointDirectory.
+         * If the load fails part way, running it again skips the records the checkpoint
+         * has seen through and upserts by natural key, so nothing is loaded twice.
+         */
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(new File(checkpointDirectory, dataTypeName + ".checkpoint"),
+                dataTypeName, new File(jsonFilePath), checkpointTarget, checkpointIntervalMillis);
+        if (checkpoint.isComplete()) {
+            logger.info("{} is already loaded, remove {} to load it again", dataTypeName, checkpointDirectory);
+            return;
+        }
+        NaturalKey naturalKey = NaturalKey.forClass(dataTypeName);
+        if (naturalKey != null) {
+            loader.upsertBy(naturalKey.getIndexName(), naturalKey.getField());
+        }
 
-        ObjectMapper objectMapper = getMapper();
-        while(it.hasNext()) {
+        LoadReport report;
+        if ("direct".equals(encoding)) {
+            ObjectReader schema = dataClass == null ? null : readerFor(dataClass);
+            try (JsonArrayReader<Value> reader = JsonArrayReader.open(
+                    mapper.getFactory(), new File(jsonFilePath), new JsonValueEncoder(schema))) {
+                skip(reader, checkpoint.getRecords());
+                report = loader.load(dataTypeName, reader, checkpoint);
+            }
+        } else {
+            try (JsonArrayReader<?> reader = JsonArrayReader.open(readerFor(dataClass), new File(jsonFilePath))) {
+                skip(reader, checkpoint.getRecords());
+                /*
+                 * The file is streamed one element at a time, each element is mapped to
+                 * its typed object and wrapped as the data for a Create.
+                 */
+                Iterator<Expr> records = new Iterator<Expr>() {
+                    @Override
+                    public boolean hasNext() {
+                        return reader.hasNext();
+                    }
 
-            Object data =  dataClass.newInstance();
-            data = objectMapper.readValue(it.next().toString(), dataClass);
+                    @Override
+                    public Expr next() {
+                        return Value(reader.next());
+                    }
+                };
+                report = loader.load(dataTypeName, records, checkpoint);
+            }
+        }
+        logger.info("Loaded {}, checkpoint {}", report, checkpoint);
+    }
 
-            client.query(
-                    Create(
-                            Class(Value(dataTypeName)),
-                            Obj("data", Value(data))
-                    )
-            ).get();    // this makes the call Async. We could always catch the futures and check later.
+    /*
+     * Moves past records without binding them to anything.
+     */
+    private static void skip(JsonArrayReader<?> reader, long records) {
+        for (long i = 0; i < records && reader.hasNext(); i++) {
+            reader.skip();
         }
-        logger.info("Loaded {} {} records.", rootNode.size(), dataTypeName);
+    }
 
+    private static void loadClass(QueryExecutor client,
+                                  String mode,
+                                  Class dataClass,
+                                  String dataTypeName,
+                                  String jsonFilePath) throws Exception {
+        switch (mode) {
+            case "sequential":
+                loadData(client, dataClass, dataTypeName, jsonFilePath);
+                break;
+            case "pipelined":
+                loadDataBulk(client, 1, dataClass, dataTypeName, jsonFilePath);
+                break;
+            case "batched":
+                loadDataBulk(client, batchSize, dataClass, dataTypeName, jsonFilePath);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown load mode: " + mode);
+        }
+    }
+
+    private static void loadNorthwind(QueryExecutor executor) throws Exception {
+        File directory = new File(dataDirectory);
+        ExecutorService workers = Executors.newFixedThreadPool(NorthwindLoader.threadsFor(directory, partitions));
+        try {
+            NorthwindLoader loader = new NorthwindLoader(executor, workers, maxInFlight, batchSize,
+                    maxBatchBytes, partitions, partitionThresholdBytes, indexTimeoutMillis)
+                    .checkpointTo(new File(checkpointDirectory), checkpointTarget, checkpointIntervalMillis);
+
+            long start = System.nanoTime();
+            Map<String, LoadReport> reports = loader.loadAll(directory);
+            logger.info("Loaded {} classes in {} ms", reports.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            workers.shutdown();
+        }
     }
 
     public static void main(String[] args)  throws Exception {
         /*
          * Create the DB specific DB client using the DB specific key just created.
+         * The endpoint and key come from fauna.properties or the FAUNA_* environment
+         * variables, see FaunaClientFactory. Every query goes through the metered
+         * executor, so counts and latencies per operation can be watched over JMX.
          */
-        FaunaClient client = FaunaClient.builder()
-                .withEndpoint(endpoint)
-                .withSecret(secret)
-                .build();
-        logger.info("Connected to FaunaDB");
+        FaunaClientFactory factory = FaunaClientFactory.load();
+        ManagedClient connection = factory.open();
+        MeteredQueryExecutor client = new MeteredQueryExecutor(connection).register("DataLoading");
+        checkpointTarget = factory.getTarget();
 
-        createClass(client, "categories");
-        createClassIndex(client, "categories");
-        loadData(client, Category.class, "categories","./northwinds-json/categories.json");
+        /*
+         * Usage: DataLoading [sequential|pipelined|batched|northwind] [maxInFlight] [batchSize] [maxBatchBytes] [pojo|direct]
+         * The batched mode is the default, sequential is the original one query per record loop
+         * and pipelined sends one record per query but keeps maxInFlight of them outstanding.
+         * The northwind mode loads every file of the data directory, classes in parallel.
+         */
+        String mode = args.length > 0 ? args[0].toLowerCase() : "batched";
+        if (args.length > 1) {
+            maxInFlight = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            batchSize = Integer.parseInt(args[2]);
+        }
+        if (args.length > 3) {
+            maxBatchBytes = Integer.parseInt(args[3]);
+        }
+        if (args.length > 4) {
+            encoding = args[4].toLowerCase();
+        }
+
+        if ("northwind".equals(mode)) {
+            loadNorthwind(client);
+        } else {
+            /*
+             * Create the classes to store the data instances, each with a class level
+             * index. The index is really a convenience feature that lets us evaluate
+             * if the data loaded properly. The unique natural key indexes are what the
+             * loads upsert by. All of it is provisioned in two queries.
+             */
+            Schema schema = new Schema()
+                    .withClassAndAllIndex("categories")
+                    .withClassAndAllIndex("products")
+                    .withClassAndAllIndex("customers");
+            EntityRepository.withLookupIndexes(schema).apply(client, indexTimeoutMillis);
 
-        createClass(client, "products");
-        createClassIndex(client, "products");
-        loadData(client, Product.class, "products", "./northwinds-json/products.json");
+            loadClass(client, mode, Category.class, "categories","./northwinds-json/categories.json");
+            loadClass(client, mode, Product.class, "products", "./northwinds-json/products.json");
+            loadClass(client, mode, Customer.class, "customers", "./northwinds-json/customers.json");
+        }
 
-        createClass(client, "customers");
-        createClassIndex(client, "customers");
-        loadData(client, Customer.class, "customers", "./northwinds-json/customers.json");
+        for (OperationMetrics operation : client.getOperations()) {
+            logger.info("{}", operation);
+        }
 
         //
-        // Just to keep things neat and tidy, close the client connections
+        // Just to keep things neat and tidy, close the client connections. This waits
+        // for any query still in flight, so the program can end without System.exit.
         //
-        client.close();
-        logger.info("Disconnected from FaunaDB");
-
-        // add this at the end of execution to make things shut down nicely
-        System.exit(0);
+        connection.close();
 
     }
 }
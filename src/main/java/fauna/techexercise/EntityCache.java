@@ -0,0 +1,250 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.faunadb.client.types.Value;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+ * A bounded, read-through cache. Entries are evicted least recently used first
+ * once maxSize is reached, and are reloaded once they are older than ttlMillis
+ * (0 disables the TTL). Concurrent misses on the same key share one load, so a
+ * hot key that expires causes one FaunaDB request rather than one per caller.
+ *
+ * An invalidation that arrives while a key is being loaded bumps the key's
+ * generation. The load still answers its callers, but its value, read before
+ * the change, is not cached.
+ */
+public class EntityCache<K, V> {
+
+    /*
+     * A cached value along with the document it came from, so it can later be
+     * matched against changes in FaunaDB.
+     */
+    public static class Entry<V> {
+        private final V value;
+        private final Value ref;
+        private final long ts;
+        private final long loadedAtNanos;
+
+        public Entry(V value, Value ref, long ts) {
+            this.value = value;
+            this.ref = ref;
+            this.ts = ts;
+            this.loadedAtNanos = System.nanoTime();
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public Value getRef() {
+            return ref;
+        }
+
+        public long getTs() {
+            return ts;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<K, Entry<V>> entries;
+    private final ConcurrentHashMap<K, CompletableFuture<Entry<V>>> loading = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Value, K> keysByRef = new ConcurrentHashMap<>();
+    // guarded by entries, only for keys with a load in flight
+    private final Map<K, Long> generations = new HashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public EntityCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, got " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > EntityCache.this.maxSize) {
+                    evictions.increment();
+                    forget(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public CompletableFuture<V> get(K key, Function<K, CompletableFuture<Entry<V>>> loader) {
+        Entry<V> cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached.getValue());
+        }
+
+        CompletableFuture<Entry<V>> load = new CompletableFuture<>();
+        CompletableFuture<Entry<V>> running = loading.putIfAbsent(key, load);
+        if (running != null) {
+            coalesced.increment();
+            return running.thenApply(Entry::getValue);
+        }
+
+        misses.increment();
+        long generation = generation(key);
+        CompletableFuture<Entry<V>> source;
+        try {
+            source = loader.apply(key);
+        } catch (RuntimeException e) {
+            source = new CompletableFuture<>();
+            source.completeExceptionally(e);
+        }
+        source.whenComplete((entry, error) -> {
+            synchronized (entries) {
+                if (error == null && generation(key) == generation) {
+                    put(key, entry);
+                }
+                generations.remove(key);
+                loading.remove(key, load);
+            }
+            if (error == null) {
+                load.complete(entry);
+            } else {
+                load.completeExceptionally(error);
+            }
+        });
+        return load.thenApply(Entry::getValue);
+    }
+
+    public Entry<V> getEntry(K key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    public void put(K key, Entry<V> entry) {
+        synchronized (entries) {
+            Entry<V> previous = entries.put(key, entry);
+            if (previous != null) {
+                forget(key, previous);
+            }
+            if (entry.getRef() != null) {
+                keysByRef.put(entry.getRef(), key);
+            }
+        }
+    }
+
+    public boolean invalidate(K key) {
+        synchronized (entries) {
+            if (loading.containsKey(key)) {
+                generations.merge(key, 1L, Long::sum);
+            }
+            Entry<V> removed = entries.remove(key);
+            if (removed != null) {
+                forget(key, removed);
+            }
+            return removed != null;
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            for (K key : loading.keySet()) {
+                generations.merge(key, 1L, Long::sum);
+            }
+            entries.clear();
+            keysByRef.clear();
+        }
+    }
+
+    /*
+     * The key of the cached entry that was read from the document with this ref, if any.
+     */
+    public K keyFor(Value ref) {
+        return keysByRef.get(ref);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /*
+     * Misses that waited on a load already in progress instead of starting their own.
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("size %d/%d, hits %d, misses %d, coalesced %d, evictions %d, expirations %d",
+                size(), maxSize, getHits(), getMisses(), getCoalesced(), getEvictions(), getExpirations());
+    }
+
+    private long generation(K key) {
+        synchronized (entries) {
+            return generations.getOrDefault(key, 0L);
+        }
+    }
+
+    private void forget(K key, Entry<V> entry) {
+        if (entry.getRef() != null) {
+            keysByRef.remove(entry.getRef(), key);
+        }
+    }
+
+    private Entry<V> lookup(K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.loadedAtNanos > ttlNanos) {
+                entries.remove(key);
+                forget(key, entry);
+                expirations.increment();
+                return null;
+            }
+            return entry;
+        }
+    }
+}
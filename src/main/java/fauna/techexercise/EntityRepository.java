@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.faunadb.client.types.Field;
+import com.faunadb.client.types.Value;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * Typed, cached lookups of one class by its natural key, e.g. products by
+ * productID. Documents are found through a unique terms index on the key and
+ * decoded with the model's ModelCodec (ProductCodec, CustomerCodec) or, for
+ * models without one, its static Field<T> constant (Category.CATEGORY_FIELD).
+ * Repeated lookups are served from an EntityCache without a round trip.
+ */
+public class EntityRepository<K, T> {
+    private final QueryExecutor executor;
+    private final String className;
+    private final String indexName;
+    private final Function<Value, T> decoder;
+    private final EntityCache<K, T> cache;
+    private GetBatcher batcher;
+
+    public EntityRepository(QueryExecutor executor,
+                            String className,
+                            String indexName,
+                            Field<T> field,
+                            int maxSize,
+                            long ttlMillis) {
+        this(executor, className, indexName, (Function<Value, T>) document -> document.get(field), maxSize, ttlMillis);
+    }
+
+    public EntityRepository(QueryExecutor executor,
+                            String className,
+                            String indexName,
+                            ModelCodec<T> codec,
+                            int maxSize,
+                            long ttlMillis) {
+        this(executor, className, indexName, (Function<Value, T>) document -> codec.decode(document.at("data")), maxSize, ttlMillis);
+    }
+
+    private EntityRepository(QueryExecutor executor,
+                             String className,
+                             String indexName,
+                             Function<Value, T> decoder,
+                             int maxSize,
+                             long ttlMillis) {
+        this.executor = executor;
+        this.className = className;
+        this.indexName = indexName;
+        this.decoder = decoder;
+        this.cache = new EntityCache<>(maxSize, ttlMillis);
+    }
+
+    public static EntityRepository<Integer, Product> products(QueryExecutor executor, int maxSize, long ttlMillis) {
+        return new EntityRepository<>(executor, "products", NaturalKey.forClass("products").getIndexName(), ProductCodec.INSTANCE, maxSize, ttlMillis);
+    }
+
+    public static EntityRepository<Integer, Category> categories(QueryExecutor executor, int maxSize, long ttlMillis) {
+        return new EntityRepository<>(executor, "categories", NaturalKey.forClass("categories").getIndexName(), Category.CATEGORY_FIELD, maxSize, ttlMillis);
+    }
+
+    public static EntityRepository<String, Customer> customers(QueryExecutor executor, int maxSize, long ttlMillis) {
+        return new EntityRepository<>(executor, "customers", NaturalKey.forClass("customers").getIndexName(), CustomerCodec.INSTANCE, maxSize, ttlMillis);
+    }
+
+    /*
+     * The unique terms indexes the factory methods above look documents up by.
+     */
+    public static Schema withLookupIndexes(Schema schema) {
+        return schema
+                .withIndex(NaturalKey.forClass("products").definition())
+                .withIndex(NaturalKey.forClass("categories").definition())
+                .withIndex(NaturalKey.forClass("customers").definition());
+    }
+
+    /*
+     * Sends cache misses through the batcher, so misses issued close together
+     * share one query.
+     */
+    public EntityRepository<K, T> withBatcher(GetBatcher batcher) {
+        this.batcher = batcher;
+        return this;
+    }
+
+    public CompletableFuture<T> get(K key) {
+        return cache.get(key, this::load);
+    }
+
+    /*
+     * Drops the cached copy, if any, and reads the document again.
+     */
+    public CompletableFuture<T> refresh(K key) {
+        cache.invalidate(key);
+        return get(key);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public EntityCache<K, T> getCache() {
+        return cache;
+    }
+
+    private CompletableFuture<EntityCache.Entry<T>> load(K key) {
+        CompletableFuture<Value> document = batcher == null
+                ? executor.query(Get(Match(Index(indexName), Value(key))))
+                : batcher.getByTerm(indexName, Value(key));
+        return document.thenApply(this::decode);
+    }
+
+    private EntityCache.Entry<T> decode(Value document) {
+        return new EntityCache.Entry<>(
+                decoder.apply(document),
+                document.at("ref"),
+                document.at("ts").to(Long.class).get()
+        );
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.faunadb.client.FaunaClient;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/******************************************************************************
+ *  Builds the FaunaDB clients used by the exercises from one place instead of
+ *  endpoint/secret statics in every main. Settings are read from a properties
+ *  file, fauna.properties in the working directory or the file named by the
+ *  fauna.config system property,
+ *
+ *  fauna.endpoint=http://localhost:8443
+ *  fauna.secret=<the Northwind key printed by GettingStarted>
+ *  fauna.adminSecret=secret
+ *  fauna.maxConcurrentQueries=64
+ *  fauna.requestTimeoutMillis=30000
+ *  fauna.shutdownTimeoutMillis=30000
+ *
+ *  and each of them can be overridden by an environment variable of the same
+ *  name in upper case, FAUNA_ENDPOINT, FAUNA_SECRET, FAUNA_ADMIN_SECRET, ...
+ *  Without any of them the endpoint and admin secret are those of the local
+ *  docker image, as in fauna.properties.example.
+ *
+ *  There are no connection pool or keep-alive settings: the driver's builder
+ *  only takes the endpoint and secret, and its HTTP client pools and keeps
+ *  connections alive with its own defaults. What this controls is how many of
+ *  them get used: every query in flight holds one connection, and the
+ *  ManagedClient returned by open() never has more than maxConcurrentQueries
+ *  in flight. requestTimeoutMillis bounds how long a caller waits, not the
+ *  request itself, see ManagedClient. Share one ManagedClient between all the
+ *  loader and query workers of a process.
+ *****************************************************************************/
+public class FaunaClientFactory {
+    private static final Logger logger = LoggerFactory.getLogger(FaunaClientFactory.class);
+
+    private static final String DEFAULT_CONFIG_FILE = "fauna.properties";
+
+    private final String endpoint;
+    private final String secret;
+    private final String adminSecret;
+    private final int maxConcurrentQueries;
+    private final long requestTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+
+    public FaunaClientFactory(Properties properties) {
+        this.endpoint = setting(properties, "fauna.endpoint", "http://localhost:8443");
+        this.secret = setting(properties, "fauna.secret", null);
+        this.adminSecret = setting(properties, "fauna.adminSecret", "secret");
+        this.maxConcurrentQueries = Integer.parseInt(setting(properties, "fauna.maxConcurrentQueries", "64"));
+        this.requestTimeoutMillis = Long.parseLong(setting(properties, "fauna.requestTimeoutMillis", "30000"));
+        this.shutdownTimeoutMillis = Long.parseLong(setting(properties, "fauna.shutdownTimeoutMillis", "30000"));
+    }
+
+    /*
+     * The settings from the configuration file, if there is one, and the environment.
+     */
+    public static FaunaClientFactory load() throws IOException {
+        Properties properties = new Properties();
+        File file = new File(System.getProperty("fauna.config", DEFAULT_CONFIG_FILE));
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            }
+            logger.debug("Read FaunaDB settings from {}", file);
+        }
+        return new FaunaClientFactory(properties);
+    }
+
+    /*
+     * A client for the database the secret (fauna.secret) belongs to.
+     */
+    public ManagedClient open() {
+        return open(required("fauna.secret", secret));
+    }
+
+    /*
+     * A client with the admin key (fauna.adminSecret), for creating databases and keys.
+     */
+    public ManagedClient openAdmin() {
+        return open(required("fauna.adminSecret", adminSecret));
+    }
+
+    public ManagedClient open(String secret) {
+        FaunaClient client = FaunaClient.builder()
+                .withEndpoint(endpoint)
+                .withSecret(secret)
+                .build();
+        logger.info("Connected to FaunaDB at {}", endpoint);
+        return new ManagedClient(client, maxConcurrentQueries, requestTimeoutMillis, shutdownTimeoutMillis);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /*
+     * Identifies the database open() connects to, for telling apart state kept
+     * for different databases (see LoadCheckpoint): the endpoint and a
+     * fingerprint of the secret, which belongs to exactly one database. The
+     * secret itself is not revealed.
+     */
+    public String getTarget() {
+        if (secret == null || secret.isEmpty()) {
+            return endpoint;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            StringBuilder fingerprint = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                fingerprint.append(String.format("%02x", digest[i]));
+            }
+            return endpoint + "#" + fingerprint;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int getMaxConcurrentQueries() {
+        return maxConcurrentQueries;
+    }
+
+    public long getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    /*
+     * fauna.someSetting is overridden by FAUNA_SOME_SETTING.
+     */
+    private static String setting(Properties properties, String name, String defaultValue) {
+        String env = System.getenv(name.replaceAll("([a-z])([A-Z])", "$1_$2").replace('.', '_').toUpperCase());
+        if (env != null && !env.isEmpty()) {
+            return env;
+        }
+        return properties.getProperty(name, defaultValue);
+    }
+
+    private static String required(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalStateException("No " + name + " configured, set it in " + DEFAULT_CONFIG_FILE
+                    + " or the environment");
+        }
+        return value;
+    }
+}
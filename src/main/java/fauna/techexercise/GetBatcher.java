@@ -0,0 +1,197 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * Coalesces point reads into one query per batch. Every get(ref) issued within
+ * windowMillis of the first one, up to maxBatchSize of them, is sent as
+ *
+ *   Map([ref1, ref2, ...], Lambda("x", If(Exists(Var("x")), Get(Var("x")), null)))
+ *
+ * and getByTerm(index, term) does the same with Match(Index(index), Var("x"))
+ * for each index. Each caller gets its own document back, or a
+ * NoSuchElementException if there is none, so code that reads one document at
+ * a time (the N + 1 pattern) costs one round trip per batch instead of per read.
+ */
+public class GetBatcher {
+    private static final ScheduledExecutorService sharedScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "get-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final QueryExecutor executor;
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+    private final int maxBatchSize;
+
+    // pending lookups by index name, refs are kept under null
+    private final Map<String, Batch> pending = new HashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private static class Batch {
+        final List<Expr> args = new ArrayList<>();
+        final List<CompletableFuture<Value>> results = new ArrayList<>();
+    }
+
+    public GetBatcher(QueryExecutor executor, long windowMillis, int maxBatchSize) {
+        this(executor, sharedScheduler, windowMillis, maxBatchSize);
+    }
+
+    public GetBatcher(QueryExecutor executor, ScheduledExecutorService scheduler, long windowMillis, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1, got " + maxBatchSize);
+        }
+        this.executor = executor;
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /*
+     * Get(ref), batched with the other refs requested in the same window.
+     */
+    public CompletableFuture<Value> get(Expr ref) {
+        return enqueue(null, ref);
+    }
+
+    /*
+     * Get(Match(Index(indexName), term)), batched with other lookups on the same index.
+     */
+    public CompletableFuture<Value> getByTerm(String indexName, Expr term) {
+        return enqueue(indexName, term);
+    }
+
+    /*
+     * Sends whatever is pending now instead of waiting for the window to close.
+     */
+    public void flush() {
+        List<String> keys;
+        synchronized (pending) {
+            keys = new ArrayList<>(pending.keySet());
+        }
+        for (String key : keys) {
+            flush(key, null);
+        }
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d reads in %d queries", getRequests(), getBatches());
+    }
+
+    private CompletableFuture<Value> enqueue(String indexName, Expr arg) {
+        CompletableFuture<Value> result = new CompletableFuture<>();
+        requests.increment();
+
+        boolean full;
+        synchronized (pending) {
+            Batch batch = pending.get(indexName);
+            if (batch == null) {
+                Batch opened = new Batch();
+                pending.put(indexName, opened);
+                if (maxBatchSize > 1) {
+                    scheduler.schedule(() -> flush(indexName, opened), windowMillis, TimeUnit.MILLISECONDS);
+                }
+                batch = opened;
+            }
+            batch.args.add(arg);
+            batch.results.add(result);
+            full = batch.args.size() >= maxBatchSize;
+        }
+
+        if (full) {
+            flush(indexName, null);
+        }
+        return result;
+    }
+
+    /*
+     * Sends the pending batch for the index, or only the given one if it is still
+     * pending (a window timer must not cut short a batch opened after its own).
+     */
+    private void flush(String indexName, Batch expected) {
+        Batch batch;
+        synchronized (pending) {
+            batch = pending.get(indexName);
+            if (batch == null || (expected != null && batch != expected)) {
+                return;
+            }
+            pending.remove(indexName);
+        }
+        batches.increment();
+
+        Expr document = indexName == null ? Var("x") : Match(Index(indexName), Var("x"));
+        Expr query = Map(
+                Arr(batch.args),
+                Lambda(Value("x"), If(Exists(document), Get(document), Null()))
+        );
+
+        CompletableFuture<Value> response;
+        try {
+            response = executor.query(query);
+        } catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+
+        response.whenComplete((documents, error) -> {
+            if (error != null) {
+                Throwable cause = BulkLoader.unwrap(error);
+                for (CompletableFuture<Value> result : batch.results) {
+                    result.completeExceptionally(cause);
+                }
+                return;
+            }
+
+            List<Value> found = new ArrayList<>(documents.asCollectionOf(Value.class).get());
+            for (int i = 0; i < batch.results.size(); i++) {
+                Value value = found.get(i);
+                if (value instanceof Value.NullV) {
+                    batch.results.get(i).completeExceptionally(
+                            new NoSuchElementException("No document for " + batch.args.get(i)));
+                } else {
+                    batch.results.get(i).complete(value);
+                }
+            }
+        });
+    }
+}
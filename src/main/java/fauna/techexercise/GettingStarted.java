@@ -39,10 +39,6 @@ package fauna.techexercise;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.core.JsonProcessingException;
-
 /*
  * These are the required imports for Fauna.
  *
@@ -55,47 +51,18 @@ import com.faunadb.client.types.*;
 import static com.faunadb.client.query.Language.*;
 
 public class GettingStarted {
-    /*
-     * Connection variables:
-     * Endpoint will depend ow whether you are using cloud or local
-     *  - https://db.fauuna.com -- for Fauna DB Cloud
-     *  - http://localhost:8443 -- if you are using a local docker instance
-     *
-     * Secret is the DD specific secret that you generated either from the
-     * GettingStarted.java execution or the running the above fauna command
-     * line commands.
-     */
-//    private static String endpoint = "https://db.fauna.com";
-    private static String endpoint = "http://localhost:8443";
-    private static String secret = "secret";
-
     private static final Logger logger = LoggerFactory.getLogger(GettingStarted.class);
 
-    private static ObjectMapper mapper = getMapper();
-
-    private static ObjectMapper getMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-
-        return mapper;
-    }
-
-    private static String toPrettyJson(Value value) throws JsonProcessingException {
-        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(value);
-    }
-
     public static void main(String[] args)  throws Exception {
         /*
          * Create an admin connection to FaunaDB.
          *
-         * If you are using the FaunaDB-Cloud version:
-         *  - the 'withEndpoint' line below is optional
-         *  - substitute your secret for "secret" below
+         * The endpoint and admin secret are read from fauna.properties or the environment:
+         *  - FAUNA_ENDPOINT, https://db.fauna.com for FaunaDB-Cloud or http://localhost:8443
+         *    for a local docker instance (the default)
+         *  - FAUNA_ADMIN_SECRET, your admin secret ("secret" for the docker image)
          */
-        FaunaClient adminClient = FaunaClient.builder()
-                .withEndpoint(endpoint)
-                .withSecret(secret)
-                .build();
+        ManagedClient adminClient = FaunaClientFactory.load().openAdmin();
         logger.info("Succesfully connected to FaunaDB as Admin!");
 
         /*
@@ -115,7 +82,7 @@ public class GettingStarted {
                         CreateDatabase(Obj("name", Value(dbName)))
                 )
         ).get();
-        logger.info("Created database: {} :: \n{}", dbName, toPrettyJson(result));
+        logger.info("Created database: {} :: \n{}", dbName, PrettyJson.of(result));
 
         /*
          * Create a key specific to the database we just created. We will use this to
@@ -126,15 +93,12 @@ public class GettingStarted {
         ).get();
         String secret = result.at("secret").to(String.class).get();
         logger.info("DB {} secret: {}", dbName, secret);
+        logger.info("Set fauna.secret in fauna.properties, or FAUNA_SECRET, to this secret for the other exercises");
 
 
         //
         // Just to keep things neat and tidy, close the client connections
         //
         adminClient.close();
-        logger.info("Disconnected from FaunaDB");
-
-        // add this at the end of execution to make things shut down nicely
-        System.exit(0);
     }
 }
@@ -25,15 +25,15 @@ package fauna.techexercise;
  * These imports are for basic functionality around logging and JSON handling and Futures.
  * They should best be thought of as a convenience items for our exercises.
  */
-import com.faunadb.client.query.Expr;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.core.JsonProcessingException;
-
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
 
 /*
  * These are the required imports for Fauna.
@@ -48,151 +48,169 @@ import static com.faunadb.client.query.Language.*;
 
 public class IndexAndQuery {
     /*
-     * Connection variables:
-     * Endpoint will depend ow whether you are using cloud or local
-     *  - https://db.fauuna.com -- for Fauna DB Cloud
-     *  - http://localhost:8443 -- if you are using a local docker instance
-     *
-     * Secret is the DD specific secret that you generated either from the
-     * GettingStarted.java execution or the running the above fauna command
-     * line commands.
+     * Page size used when paging through an index. Ridiculously small by default for
+     * example purposes only, can be overridden with the first command line argument.
      */
-//    private static String endpoint = "https://db.fauna.com";
-    private static String endpoint = "http://localhost:8443";
-    private static String secret = "fnAC9FsHMiACAHMG0pNOe93XQ9TVVdHZMZwPbFJ0";
+    private static int pageSize = 8;
 
-    private static final Logger logger = LoggerFactory.getLogger(IndexAndQuery.class);
+    // maximum time to wait for the indexes to build, 2 minutes
+    private static long indexTimeoutMillis = 120000;
 
-    private static ObjectMapper mapper = getMapper();
+    private static final Logger logger = LoggerFactory.getLogger(IndexAndQuery.class);
 
-    private static ObjectMapper getMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private static void pageThroughValuesOnlyIndex(QueryExecutor client, String indexName) throws Exception {
+        /*
+         * Read all the records of a values based index
+         * Use a small'ish page size so that we can demonstrate a paging example.
+         *
+         * The PageScanner takes care of the after cursor and fetches the next page
+         * while we are still logging the current one. Each document is only pretty
+         * printed with DEBUG logging on, otherwise there is a progress line every
+         * few seconds.
+         */
+        PageScanner scanner = PageScanner.builder(client, Match(Index(indexName)))
+                .withPageSize(pageSize)
+                .build();
 
-        return mapper;
+        ScanProgress progress = new ScanProgress(logger, indexName, scanner, 5000, 100);
+        scanner.forEachRemaining(document -> {
+            logger.debug("Result: {}", PrettyJson.of(document));
+            progress.accept(document);
+        });
+        progress.finish();
     }
 
-    private static String toPrettyJson(Value value) throws JsonProcessingException {
-        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(value);
+    private static void listProductsOfCategory(QueryExecutor client, int categoryID) throws Exception {
+        /*
+         * A list view straight from a covering index: the index values hold the
+         * fields we show, so each page is a single read and no document is fetched.
+         */
+        try (Stream<ProductSummary> products = ProductSummary.BY_CATEGORY.scan(client, Value(categoryID), pageSize)) {
+            products.forEach(product -> logger.debug("Product: {}", product));
+        }
+        try (Stream<CategorySummary> categories = CategorySummary.SUMMARIES.scan(client, pageSize)) {
+            logger.info("{} categories", categories.count());
+        }
     }
 
-    private static void createIndex(FaunaClient client, Expr indexDef, boolean waitForIndexToBeActive) throws Exception {
+    private static void listProducts(QueryExecutor client) throws Exception {
         /*
-         * This is a generalized example of Fauna Query Language composable nature.
-         * The function accepts a type of Epr which will be the definition of the index.
+         * The whole product list, in productID order, from the summaries index:
+         * one read per page and no document fetched.
          */
-        Value result = client.query(
-                CreateIndex(indexDef)
-        ).get();
-        String indexName = result.at("name").to(String.class).get();
-        logger.info("Created index: {} \n{}", indexName, toPrettyJson(result));
-
-        if (waitForIndexToBeActive) {
-            waitForIndexToBuild(client, indexName);
+        try (Stream<ProductSummary> products = ProductSummary.SUMMARIES.scan(client, pageSize)) {
+            ProductSummary[] cheapest = products
+                    .sorted((a, b) -> Double.compare(a.getUnitPrice(), b.getUnitPrice()))
+                    .limit(3)
+                    .toArray(ProductSummary[]::new);
+            logger.info("Cheapest products: {}", Arrays.asList(cheapest));
         }
     }
 
-    /*
-     * When you create a new index it can take it a little while to become active.
-     * In other words, it may take it a whil before it has fully added all instances
-     * of the class being indexed. If you try to query before it is active you may
-     * not see all instances of the data.
-     */
-    private static void waitForIndexToBuild(FaunaClient client, String indexName) throws Exception {
-        int totalWaitMillis = 120000;   // maximum time to wait for build 2 minutes
-        int intervalMillis = 5000;      // check every 5 seconds
-        int maxIntervals = totalWaitMillis/intervalMillis;
-
-        logger.info("Waiting for index {} to become active...", indexName);
-        for(int i = 0; i < maxIntervals; i++) {
-            try {
-                Value result = client.query(
-                        Select(Value("active"), Get(Index(indexName)))
-                ).get();
-                if (result.to(Boolean.class).get()) {
-                    logger.info("Index {} is active.", indexName);
-                    return;
-                }
-                Thread.sleep(intervalMillis);
-            } catch(InterruptedException ie) {}
+    private static void scanValuesIndexInParallel(QueryExecutor client, String indexName, List<Long> splitKeys) throws Exception {
+        /*
+         * Same idea as above, but the index is cut into key ranges that are paged
+         * through at the same time. The rows come back in index order.
+         */
+        RangeScanner scanner = new RangeScanner(client, indexName, ForkJoinPool.commonPool(), pageSize, true);
+        try (Stream<Value> documents = scanner.scan(splitKeys, true)) {
+            long count = documents.count();
+            logger.info("Read {} records from {} in {} ranges", count, indexName, splitKeys.size() + 1);
         }
     }
 
-    private static void pageThroughValuesOnlyIndex(FaunaClient client, String indexName) throws Exception {
+    private static void lookUpProductsThroughCache(QueryExecutor client) throws Exception {
         /*
-         * Read all the records of a values based index
-         * Use a small'ish page size so that we can demonstrate a paging example.
-         *
-         * NOTE: after is inclusive of the value.
+         * Point lookups by productID. The first pass goes to FaunaDB, the second
+         * one is answered from the repository's cache. There is no TTL, instead
+         * the invalidator evicts the products that changed since they were cached.
          */
-        Optional<Value> dataPage = Optional.empty();
-        Optional<Value> cursorPos = Optional.empty();
-        Expr paginationExpr;
-
-        int pageSize = 8;   // ridiculously small page size for example purposes only
-        do {
-
-            if (!cursorPos.isPresent()) {
-                paginationExpr = Paginate(Match(Index(indexName))).size(Value(pageSize));
-            } else {
-                paginationExpr = Paginate(Match(Index(indexName))).after(cursorPos.get()).size(Value(pageSize));
-            }
-
-            Value result = client.query(
-                    Map(
-                            paginationExpr,
-                            Lambda(Value("x"), Select(Value("data"), Get(Var("x"))))
-                    )
-            ).get();
-
-            dataPage = result.getOptional(Field.at("data"));
-            if (dataPage.isPresent()) {
-
-                logger.info("Page Results: {}", toPrettyJson(dataPage.get()));
+        EntityRepository<Integer, Product> products = EntityRepository.products(client, 1000, 0);
+        CacheInvalidator<Integer> invalidator =
+                new CacheInvalidator<>(client, products, "products_by_ts", false, pageSize);
+        invalidator.poll();
+        for (int pass = 0; pass < 2; pass++) {
+            for (int productID = 1; productID <= 10; productID++) {
+                Product product = products.get(productID).get();
+                logger.debug("Product {}: {}", productID, product.getName());
             }
+        }
+        logger.info("Evicted {} changed products", invalidator.poll());
+        logger.info("Product cache: {}", products.getCache());
+    }
 
-            cursorPos = result.getOptional(Field.at("after"));
-            if (cursorPos.isPresent()) {
-                logger.info("After: {}", toPrettyJson(cursorPos.get()));
-            }
+    private static void readProductsOfCategory(QueryExecutor client, int categoryID) throws Exception {
+        /*
+         * The index gives us refs, reading them one Get at a time would be one
+         * round trip per product. The batcher collects the Gets issued here into
+         * a single Map(refs, Get) query.
+         */
+        GetBatcher batcher = new GetBatcher(client, 5, 100);
+        Value page = client.query(Paginate(Match(Index("products_by_category_id"), Value(categoryID)))).get();
 
-        } while (cursorPos.isPresent());
+        List<CompletableFuture<Value>> products = new ArrayList<>();
+        for (Value ref : page.at("data").asCollectionOf(Value.class).get()) {
+            products.add(batcher.get(ref));
+        }
+        CompletableFuture.allOf(products.toArray(new CompletableFuture[0])).get();
+        logger.info("Read {} products of category {}: {}", products.size(), categoryID, batcher);
     }
 
     public static void main(String[] args)  throws Exception {
         /*
          * Create the DB specific DB client using the DB specific key just created.
+         * The endpoint and key come from fauna.properties or the FAUNA_* environment
+         * variables, see FaunaClientFactory. Every query goes through the metered
+         * executor, so counts and latencies per operation can be watched over JMX.
          */
-        FaunaClient client = FaunaClient.builder()
-                .withEndpoint(endpoint)
-                .withSecret(secret)
-                .build();
-        logger.info("Connected to FaunaDB");
-
-        Expr categoryByIdIdx = Obj(
-                "name", Value("category_by_id"),
-                "source", Class(Value("categories")),
-                "terms", Arr(Obj("field", Arr(Value("data"), Value("name")))),
-                "values", Arr(Obj("field", Arr(Value("data"), Value("categoryID"))))
-        );
-        createIndex(client, categoryByIdIdx, true);
-
-        Expr productsByCategoryIdIdx = Obj(
-                "name", Value("products_by_category_id"),
-                "source", Class(Value("products")),
-                "terms", Arr(Obj("field", Arr(Value("data"), Value("categoryID"))))
-        );
-        createIndex(client, productsByCategoryIdIdx, true);
+        ManagedClient connection = FaunaClientFactory.load().open();
+        MeteredQueryExecutor client = new MeteredQueryExecutor(connection).register("IndexAndQuery");
+
+        if (args.length > 0) {
+            pageSize = Integer.parseInt(args[0]);
+        }
+
+        /*
+         * The indexes are described declaratively and provisioned together: one query
+         * creates whichever of them are missing, then we wait for all of them to be active.
+         */
+        Schema schema = new Schema()
+                .withIndex(Schema.index("category_by_id", "categories")
+                        .term("data", "name")
+                        .value("data", "categoryID"))
+                .withIndex(Schema.index("products_by_category_id", "products")
+                        .term("data", "categoryID"))
+                .withIndex(Schema.index("products_by_product_id", "products")
+                        .value("data", "productID")
+                        .value("ref"))
+                .withIndex(CacheInvalidator.changesIndex("products"))
+                .withIndex(ProductSummary.SUMMARIES.definition())
+                .withIndex(ProductSummary.BY_CATEGORY.definition())
+                .withIndex(CategorySummary.SUMMARIES.definition());
+        EntityRepository.withLookupIndexes(schema);
+        schema.apply(client, indexTimeoutMillis);
 
         pageThroughValuesOnlyIndex(client, "categories_all");
 
+        // The Northwind productIDs run from 1 to 77, cut them into 4 ranges
+        scanValuesIndexInParallel(client, "products_by_product_id", RangeScanner.evenSplits(1, 78, 4));
+
+        lookUpProductsThroughCache(client);
+
+        readProductsOfCategory(client, 1);
+
+        listProductsOfCategory(client, 1);
+
+        listProducts(client);
+
+        for (OperationMetrics operation : client.getOperations()) {
+            logger.info("{}", operation);
+        }
+
         //
-        // Just to keep things neat and tidy, close the client connections
+        // Just to keep things neat and tidy, close the client connections. This waits
+        // for any query still in flight, so the program can end without System.exit.
         //
-        client.close();
-        logger.info("Disconnected from FaunaDB");
-
-        // add this at the end of execution to make things shut down nicely
-        System.exit(0);
+        connection.close();
     }
 }
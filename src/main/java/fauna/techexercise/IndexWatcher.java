@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * When you create a new index it can take it a little while to become active.
+ * In other words, it may take it a while before it has fully added all instances
+ * of the class being indexed. If you try to query before it is active you may
+ * not see all instances of the data.
+ *
+ * awaitActive checks all the given indexes in a single query, first right away
+ * and then with an exponential backoff (25 ms, 50 ms, ... up to 2 s). Indexes
+ * that are active drop out of the next check. The returned future completes
+ * once every index is active, fails with a TimeoutException naming the indexes
+ * still building when the timeout expires, and stops polling when cancelled.
+ */
+public class IndexWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(IndexWatcher.class);
+
+    private static final long INITIAL_DELAY_MILLIS = 25;
+    private static final long MAX_DELAY_MILLIS = 2000;
+
+    private static final ScheduledExecutorService sharedScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "index-watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final QueryExecutor executor;
+    private final ScheduledExecutorService scheduler;
+
+    public IndexWatcher(QueryExecutor executor) {
+        this(executor, sharedScheduler);
+    }
+
+    public IndexWatcher(QueryExecutor executor, ScheduledExecutorService scheduler) {
+        this.executor = executor;
+        this.scheduler = scheduler;
+    }
+
+    public CompletableFuture<Void> awaitActive(Collection<String> indexNames, long timeoutMillis) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        AtomicReference<ScheduledFuture<?>> nextCheck = new AtomicReference<>();
+        result.whenComplete((ignored, error) -> {
+            ScheduledFuture<?> scheduled = nextCheck.get();
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        });
+
+        logger.info("Waiting for indexes {} to become active...", indexNames);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        check(new ArrayList<>(indexNames), INITIAL_DELAY_MILLIS, deadline, timeoutMillis, result, nextCheck);
+        return result;
+    }
+
+    private void check(List<String> pending,
+                       long delayMillis,
+                       long deadline,
+                       long timeoutMillis,
+                       CompletableFuture<Void> result,
+                       AtomicReference<ScheduledFuture<?>> nextCheck) {
+        if (result.isDone()) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            result.complete(null);
+            return;
+        }
+
+        List<Expr> checks = new ArrayList<>(pending.size());
+        for (String indexName : pending) {
+            checks.add(Select(Value("active"), Get(Index(indexName))));
+        }
+
+        CompletableFuture<Value> query;
+        try {
+            query = executor.query(Arr(checks));
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+
+        query.whenComplete((actives, error) -> {
+            if (result.isDone()) {
+                return;
+            }
+            if (error != null) {
+                result.completeExceptionally(BulkLoader.unwrap(error));
+                return;
+            }
+
+            List<String> building = new ArrayList<>();
+            Iterator<String> names = pending.iterator();
+            for (Value active : actives.asCollectionOf(Value.class).get()) {
+                String indexName = names.next();
+                if (active.to(Boolean.class).get()) {
+                    logger.info("Index {} is active.", indexName);
+                } else {
+                    building.add(indexName);
+                }
+            }
+            if (building.isEmpty()) {
+                result.complete(null);
+                return;
+            }
+
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMillis <= 0) {
+                result.completeExceptionally(new TimeoutException(
+                        "Indexes " + building + " were not active after " + timeoutMillis + " ms"));
+                return;
+            }
+
+            long nextDelay = Math.min(MAX_DELAY_MILLIS, delayMillis * 2);
+            nextCheck.set(scheduler.schedule(
+                    () -> check(building, nextDelay, deadline, timeoutMillis, result, nextCheck),
+                    Math.min(delayMillis, remainingMillis),
+                    TimeUnit.MILLISECONDS));
+        });
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * Streams the elements of a top-level JSON array, like the files in
+ * northwinds-json, one at a time. Only the element being read is ever held in
+ * memory, so heap use stays flat regardless of the size of the file.
+ */
+public class JsonArrayReader<T> implements Iterator<T>, Closeable {
+
+    /*
+     * Reads one element starting at the parser's current token and leaves the
+     * parser on the element's last token.
+     */
+    @FunctionalInterface
+    public interface ElementReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    private final JsonParser parser;
+    private final ElementReader<T> elementReader;
+    private JsonToken current;
+
+    public static <T> JsonArrayReader<T> open(ObjectMapper mapper, File file, Class<T> type) throws IOException {
+        return open(mapper.readerFor(type), file);
+    }
+
+    public static <T> JsonArrayReader<T> open(ObjectReader reader, File file) throws IOException {
+        return new JsonArrayReader<>(reader.getFactory().createParser(file), reader::readValue);
+    }
+
+    public static <T> JsonArrayReader<T> open(JsonFactory factory, File file, ElementReader<T> elementReader) throws IOException {
+        return new JsonArrayReader<>(factory.createParser(file), elementReader);
+    }
+
+    public JsonArrayReader(JsonParser parser, ElementReader<T> elementReader) throws IOException {
+        this.parser = parser;
+        this.elementReader = elementReader;
+
+        JsonToken first = parser.nextToken();
+        if (first != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new JsonParseException(parser, "Expected a top-level JSON array but found " + first);
+        }
+        current = parser.nextToken();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return current != null && current != JsonToken.END_ARRAY;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            T value = elementReader.read(parser);
+            current = parser.nextToken();
+            return value;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Steps over the next element without binding it. The tokens are still read
+     * but nothing is allocated for them.
+     */
+    public void skip() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            parser.skipChildren();
+            current = parser.nextToken();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
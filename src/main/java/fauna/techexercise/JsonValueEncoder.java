@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import com.faunadb.client.types.Value;
+import com.faunadb.client.types.Value.ArrayV;
+import com.faunadb.client.types.Value.BooleanV;
+import com.faunadb.client.types.Value.DoubleV;
+import com.faunadb.client.types.Value.LongV;
+import com.faunadb.client.types.Value.NullV;
+import com.faunadb.client.types.Value.ObjectV;
+import com.faunadb.client.types.Value.RefV;
+import com.faunadb.client.types.Value.StringV;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Turns JSON tokens straight into the driver's Value tree. There is no POJO in
+ * between and no reflection over @FaunaField annotations, so any JSON document
+ * can be loaded as is, whether or not there is a model class for it.
+ *
+ * Optionally a schema reader (an ObjectReader for one of the model classes) can
+ * be given. Each element is then also bound to that class, purely to reject
+ * records that do not fit it; what gets stored is still the encoded JSON.
+ */
+public class JsonValueEncoder implements JsonArrayReader.ElementReader<Value> {
+    private final ObjectReader schema;
+
+    public JsonValueEncoder() {
+        this(null);
+    }
+
+    public JsonValueEncoder(ObjectReader schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public Value read(JsonParser parser) throws IOException {
+        if (schema == null) {
+            return encode(parser);
+        }
+
+        /*
+         * The element has to be read twice, once to validate and once to encode,
+         * so buffer its tokens. Only this element is buffered, never the file.
+         */
+        TokenBuffer buffer = new TokenBuffer(parser.getCodec(), false);
+        buffer.copyCurrentStructure(parser);
+        schema.readValue(buffer.asParser());
+        return encode(buffer.asParser());
+    }
+
+    /*
+     * Encodes the value starting at the parser's current token (or the next one
+     * if the parser has not been advanced yet) and leaves the parser on its last token.
+     */
+    public static Value encode(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        if (token == null) {
+            throw new JsonParseException(parser, "Unexpected end of input");
+        }
+
+        switch (token) {
+            case START_OBJECT:
+                Map<String, Value> fields = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    fields.put(name, encode(parser));
+                }
+                return new ObjectV(fields);
+
+            case START_ARRAY:
+                List<Value> elements = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    elements.add(encode(parser));
+                }
+                return new ArrayV(elements);
+
+            case VALUE_STRING:
+                return new StringV(parser.getText());
+
+            case VALUE_NUMBER_INT:
+                if (parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER) {
+                    return new DoubleV(parser.getDoubleValue());
+                }
+                return new LongV(parser.getLongValue());
+
+            case VALUE_NUMBER_FLOAT:
+                return new DoubleV(parser.getDoubleValue());
+
+            case VALUE_TRUE:
+                return BooleanV.TRUE;
+
+            case VALUE_FALSE:
+                return BooleanV.FALSE;
+
+            case VALUE_NULL:
+                return NullV.NULL;
+
+            default:
+                throw new JsonParseException(parser, "Unsupported JSON token " + token);
+        }
+    }
+
+    /*
+     * The way back: writes a Value as the plain JSON it would have been encoded
+     * from. Refs are written as their id; other special types (times, dates,
+     * bytes) as their string form.
+     */
+    public static void write(JsonGenerator generator, Value value) throws IOException {
+        if (value instanceof ObjectV) {
+            generator.writeStartObject();
+            for (Map.Entry<String, Value> field : value.asMapOf(Value.class).get().entrySet()) {
+                generator.writeFieldName(field.getKey());
+                write(generator, field.getValue());
+            }
+            generator.writeEndObject();
+        } else if (value instanceof ArrayV) {
+            generator.writeStartArray();
+            for (Value element : value.asCollectionOf(Value.class).get()) {
+                write(generator, element);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof StringV) {
+            generator.writeString(value.to(String.class).get());
+        } else if (value instanceof LongV) {
+            generator.writeNumber(value.to(Long.class).get());
+        } else if (value instanceof DoubleV) {
+            generator.writeNumber(value.to(Double.class).get());
+        } else if (value instanceof BooleanV) {
+            generator.writeBoolean(value.to(Boolean.class).get());
+        } else if (value == null || value instanceof NullV) {
+            generator.writeNull();
+        } else if (value instanceof RefV) {
+            generator.writeString(((RefV) value).getId());
+        } else {
+            generator.writeString(value.toString());
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * How far a bulk load of one file has got, kept in a small properties file so
+ * that a failed load can be resumed instead of started over.
+ *
+ * Batches complete out of order, so the checkpoint keeps the acknowledged index
+ * ranges and only moves its records mark past a range once every record before
+ * it is acknowledged too: everything below the mark is in FaunaDB (or failed
+ * for good, e.g. a record FaunaDB rejects). Records above the mark may or may
+ * not have been written, which is why a resumed load should upsert by natural
+ * key (BulkLoader.upsertBy) so that writing them again is harmless.
+ *
+ * A checkpoint only applies to the load it was written by: the same source file,
+ * unchanged (path, length and modification time), into the same database (the
+ * target, see FaunaClientFactory.getTarget()). One left over from another file
+ * or database is ignored, with a warning, and the load starts from the top.
+ *
+ * The file is rewritten at most every saveIntervalMillis while the load runs,
+ * and always by save(). It is replaced atomically, so a crash never leaves a
+ * torn checkpoint behind.
+ */
+public class LoadCheckpoint {
+    private static final Logger logger = LoggerFactory.getLogger(LoadCheckpoint.class);
+
+    private final File file;
+    private final String className;
+    private final String source;
+    private final long sourceLength;
+    private final long sourceModified;
+    private final String target;
+    private final long saveIntervalNanos;
+
+    // guarded by this
+    private final TreeMap<Long, Long> acknowledged = new TreeMap<>();
+    private long records;
+    private long lastBatchFrom = -1;
+    private long lastBatchTo = -1;
+    private boolean complete;
+    private long nextSave;
+
+    private LoadCheckpoint(File file, String className, File source, String target, long saveIntervalMillis) {
+        this.file = file;
+        this.className = className;
+        this.source = source.getAbsolutePath();
+        this.sourceLength = source.length();
+        this.sourceModified = source.lastModified();
+        this.target = target;
+        this.saveIntervalNanos = TimeUnit.MILLISECONDS.toNanos(saveIntervalMillis);
+        this.nextSave = System.nanoTime() + saveIntervalNanos;
+    }
+
+    /*
+     * The checkpoint kept in file for loading source into className at target, or
+     * a fresh one if there is no such file yet or it was written for another load.
+     */
+    public static LoadCheckpoint open(File file,
+                                      String className,
+                                      File source,
+                                      String target,
+                                      long saveIntervalMillis) throws IOException {
+        LoadCheckpoint checkpoint = new LoadCheckpoint(file, className, source, target, saveIntervalMillis);
+        if (file.isFile()) {
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                properties.load(in);
+            }
+            if (!className.equals(properties.getProperty("class"))) {
+                throw new IOException("Checkpoint " + file + " is for class " + properties.getProperty("class")
+                        + ", not " + className);
+            }
+            String mismatch = checkpoint.mismatch(properties);
+            if (mismatch != null) {
+                logger.warn("Ignoring checkpoint {}, it was written for {}", file, mismatch);
+                return checkpoint;
+            }
+            checkpoint.records = Long.parseLong(properties.getProperty("records", "0"));
+            checkpoint.lastBatchFrom = Long.parseLong(properties.getProperty("lastBatchFrom", "-1"));
+            checkpoint.lastBatchTo = Long.parseLong(properties.getProperty("lastBatchTo", "-1"));
+            checkpoint.complete = Boolean.parseBoolean(properties.getProperty("complete", "false"));
+            logger.info("Resuming {} from record {} ({})", className, checkpoint.records, file);
+        }
+        return checkpoint;
+    }
+
+    /*
+     * Number of leading records of the file that are done with.
+     */
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /*
+     * Records from (inclusive) to (exclusive) are written or failed for good.
+     */
+    public synchronized void acknowledge(long from, long to) {
+        if (to <= records) {
+            return;
+        }
+        acknowledged.put(Math.max(from, records), to);
+        Long end;
+        while ((end = acknowledged.remove(records)) != null) {
+            records = end;
+        }
+        lastBatchFrom = from;
+        lastBatchTo = to;
+
+        long now = System.nanoTime();
+        if (now >= nextSave) {
+            nextSave = now + saveIntervalNanos;
+            try {
+                write();
+            } catch (IOException e) {
+                logger.warn("Could not save checkpoint {}", file, e);
+            }
+        }
+    }
+
+    /*
+     * Writes the checkpoint now; complete marks the whole file as loaded.
+     */
+    public synchronized void save(boolean complete) throws IOException {
+        this.complete = complete;
+        write();
+    }
+
+    private void write() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("class", className);
+        properties.setProperty("source", source);
+        properties.setProperty("sourceLength", Long.toString(sourceLength));
+        properties.setProperty("sourceModified", Long.toString(sourceModified));
+        properties.setProperty("target", target);
+        properties.setProperty("records", Long.toString(records));
+        properties.setProperty("lastBatchFrom", Long.toString(lastBatchFrom));
+        properties.setProperty("lastBatchTo", Long.toString(lastBatchTo));
+        properties.setProperty("complete", Boolean.toString(complete));
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, "Bulk load checkpoint");
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * What differs between the load a saved checkpoint was written for and this one, if anything.
+     */
+    private String mismatch(Properties properties) {
+        if (!source.equals(properties.getProperty("source"))) {
+            return "source " + properties.getProperty("source") + ", not " + source;
+        }
+        if (!Long.toString(sourceLength).equals(properties.getProperty("sourceLength"))
+                || !Long.toString(sourceModified).equals(properties.getProperty("sourceModified"))) {
+            return "an earlier version of " + source;
+        }
+        if (!target.equals(properties.getProperty("target"))) {
+            return "database " + properties.getProperty("target") + ", not " + target;
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return className + " at record " + records + (complete ? " (complete)" : "");
+    }
+}
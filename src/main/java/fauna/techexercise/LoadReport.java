@@ -0,0 +1,130 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Summary of a bulk load: how many records made it, which ones did not and why,
+ * and how fast the whole thing went.
+ */
+public class LoadReport {
+
+    public static class RecordFailure {
+        private final long recordIndex;
+        private final Throwable cause;
+
+        public RecordFailure(long recordIndex, Throwable cause) {
+            this.recordIndex = recordIndex;
+            this.cause = cause;
+        }
+
+        public long getRecordIndex() {
+            return recordIndex;
+        }
+
+        public Throwable getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            return "record " + recordIndex + ": " + cause;
+        }
+    }
+
+    private final String className;
+    private final long loaded;
+    private final List<RecordFailure> failures;
+    private final long elapsedNanos;
+    private final LatencyRecorder latencies;
+    private final long queries;
+    private final double p50Millis;
+    private final double p99Millis;
+
+    /*
+     * Combines the reports of loads that ran side by side (e.g. the partitions of
+     * one file). Elapsed time is the slowest of them, latencies are merged.
+     */
+    public static LoadReport combine(String className, List<LoadReport> reports) {
+        long loaded = 0;
+        long elapsedNanos = 0;
+        List<RecordFailure> failures = new ArrayList<>();
+        LatencyRecorder latencies = new LatencyRecorder();
+        for (LoadReport report : reports) {
+            loaded += report.loaded;
+            elapsedNanos = Math.max(elapsedNanos, report.elapsedNanos);
+            failures.addAll(report.failures);
+            latencies.add(report.latencies);
+        }
+        return new LoadReport(className, loaded, failures, elapsedNanos, latencies);
+    }
+
+    public LoadReport(String className,
+                      long loaded,
+                      List<RecordFailure> failures,
+                      long elapsedNanos,
+                      LatencyRecorder latencies) {
+        this.className = className;
+        this.loaded = loaded;
+        this.failures = Collections.unmodifiableList(new ArrayList<>(failures));
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies;
+        this.queries = latencies.count();
+        this.p50Millis = latencies.percentile(0.50);
+        this.p99Millis = latencies.percentile(0.99);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public long getLoaded() {
+        return loaded;
+    }
+
+    public List<RecordFailure> getFailures() {
+        return failures;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public long getQueries() {
+        return queries;
+    }
+
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : loaded * 1_000_000_000.0 / elapsedNanos;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d loaded, %d failed in %d ms (%.1f records/sec, %d queries, p50 %.2f ms, p99 %.2f ms)",
+                className, loaded, failures.size(), getElapsedMillis(), getRecordsPerSecond(),
+                queries, p50Millis, p99Millis);
+    }
+}
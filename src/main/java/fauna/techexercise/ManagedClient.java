@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.faunadb.client.FaunaClient;
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+ * A FaunaClient shared by many workers, as built by FaunaClientFactory. At most
+ * maxConcurrentQueries queries are sent at once, the rest wait in line without
+ * blocking the caller.
+ *
+ * requestTimeoutMillis is a deadline for the caller, not for the request: the
+ * driver can not cancel a request it has sent. A query that has not completed
+ * within requestTimeoutMillis of being issued, queueing included, fails:
+ *
+ *  - with a TimeoutException if it was still waiting in line. It was never
+ *    sent and can safely be issued again.
+ *  - with a QueryOutcomeUnknownException if it had been sent. The request keeps
+ *    running, and keeps its slot, until the driver gets an answer or gives up,
+ *    so FaunaDB may still execute it. Only an idempotent query should be sent
+ *    again.
+ *
+ * close() stops accepting queries, waits up to shutdownTimeoutMillis for the
+ * ones already issued to complete and then closes the driver, which releases
+ * its connections and threads so that the JVM can exit without System.exit.
+ */
+public class ManagedClient implements QueryExecutor, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ManagedClient.class);
+
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fauna-request-timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Pending {
+        final Expr expr;
+        final CompletableFuture<Value> result;
+        volatile boolean sent = false;
+
+        Pending(Expr expr, CompletableFuture<Value> result) {
+            this.expr = expr;
+            this.result = result;
+        }
+    }
+
+    private final FaunaClient client;
+    private final int maxConcurrentQueries;
+    private final long requestTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+
+    // guarded by this
+    private final Queue<Pending> waiting = new ArrayDeque<>();
+    private int running = 0;
+    private boolean closed = false;
+
+    ManagedClient(FaunaClient client, int maxConcurrentQueries, long requestTimeoutMillis, long shutdownTimeoutMillis) {
+        if (maxConcurrentQueries < 1) {
+            throw new IllegalArgumentException("maxConcurrentQueries must be at least 1, got " + maxConcurrentQueries);
+        }
+        this.client = client;
+        this.maxConcurrentQueries = maxConcurrentQueries;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+    }
+
+    @Override
+    public CompletableFuture<Value> query(Expr expr) {
+        CompletableFuture<Value> result = new CompletableFuture<>();
+        Pending request = new Pending(expr, result);
+        Pending pending = request;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Client is closed");
+            }
+            if (running >= maxConcurrentQueries) {
+                waiting.add(pending);
+                pending = null;
+            } else {
+                running++;
+            }
+        }
+
+        if (requestTimeoutMillis > 0) {
+            ScheduledFuture<?> timeout = timer.schedule(
+                    () -> result.completeExceptionally(request.sent
+                            ? new QueryOutcomeUnknownException("Query sent but not answered within " + requestTimeoutMillis
+                                    + " ms, it may still be executed")
+                            : new TimeoutException("Query not sent within " + requestTimeoutMillis + " ms")),
+                    requestTimeoutMillis, TimeUnit.MILLISECONDS);
+            result.whenComplete((value, error) -> timeout.cancel(false));
+        }
+
+        if (pending != null) {
+            send(pending);
+        }
+        return result;
+    }
+
+    /*
+     * Queries sent and not yet answered, plus those waiting for their turn.
+     */
+    public synchronized int getInFlight() {
+        return running + waiting.size();
+    }
+
+    @Override
+    public void close() throws Exception {
+        synchronized (this) {
+            closed = true;
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMillis);
+            long remaining;
+            while (running + waiting.size() > 0
+                    && (remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())) > 0) {
+                wait(remaining);
+            }
+            if (running + waiting.size() > 0) {
+                logger.warn("Closing with {} queries still running and {} waiting", running, waiting.size());
+                for (Pending pending : waiting) {
+                    pending.result.completeExceptionally(new IllegalStateException("Client is closed"));
+                }
+                waiting.clear();
+            }
+        }
+        client.close();
+        logger.info("Disconnected from FaunaDB");
+    }
+
+    private void send(Pending pending) {
+        while (pending != null) {
+            if (!pending.result.isDone()) {
+                pending.sent = true;
+                CompletableFuture<Value> response;
+                try {
+                    response = client.query(pending.expr);
+                } catch (RuntimeException e) {
+                    response = new CompletableFuture<>();
+                    response.completeExceptionally(e);
+                }
+
+                CompletableFuture<Value> result = pending.result;
+                response.whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(BulkLoader.unwrap(error));
+                    } else {
+                        result.complete(value);
+                    }
+                    send(next());
+                });
+                return;
+            }
+            // timed out while waiting, hand its slot to the next one
+            pending = next();
+        }
+    }
+
+    /*
+     * Passes the finished query's slot on to the next waiting one, if any.
+     */
+    private synchronized Pending next() {
+        Pending next = waiting.poll();
+        if (next == null) {
+            running--;
+            notifyAll();
+        }
+        return next;
+    }
+}
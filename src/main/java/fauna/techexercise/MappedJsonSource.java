@@ -0,0 +1,252 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * A JSON file read through memory-mapped windows of the file (FileChannel.map)
+ * rather than a FileInputStream, so the bytes are paged in by the OS and never
+ * copied onto the heap as a whole.
+ *
+ * split(n) cuts the top-level array into up to n byte ranges of about the same
+ * size, each holding whole elements, and each Slice is parsed on its own by a
+ * JsonArrayReader. Parallel workers can so read disjoint parts of one big file
+ * at the same time, every element being parsed exactly once. Finding the cuts
+ * takes one pass over the bytes that only tracks nesting depth and strings,
+ * which is much cheaper than tokenizing.
+ */
+public class MappedJsonSource implements Closeable {
+    private static final int WINDOW_BYTES = 64 * 1024 * 1024;
+
+    private static final byte[] OPEN = "[".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLOSE = "]".getBytes(StandardCharsets.US_ASCII);
+
+    /*
+     * A byte range of the file holding whole array elements, separated by commas
+     * but without the brackets of the array, except for the slice covering the
+     * whole file.
+     */
+    public class Slice {
+        private final long start;
+        private final long end;
+        private final boolean whole;
+
+        private Slice(long start, long end, boolean whole) {
+            this.start = start;
+            this.end = end;
+            this.whole = whole;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        public long length() {
+            return end - start;
+        }
+
+        /*
+         * The elements of this slice, read as if they made an array of their own.
+         */
+        public <T> JsonArrayReader<T> reader(JsonFactory factory, JsonArrayReader.ElementReader<T> elementReader) throws IOException {
+            return new JsonArrayReader<>(factory.createParser(open()), elementReader);
+        }
+
+        public InputStream open() {
+            InputStream bytes = new MappedInputStream(start, end);
+            if (whole) {
+                return bytes;
+            }
+            return new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                    new ByteArrayInputStream(OPEN), bytes, new ByteArrayInputStream(CLOSE))));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%d, %d)", file.getName(), start, end);
+        }
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedJsonSource(File file, FileChannel channel) throws IOException {
+        this.file = file;
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    public static MappedJsonSource open(File file) throws IOException {
+        return new MappedJsonSource(file, FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /*
+     * The whole file as one slice.
+     */
+    public Slice all() {
+        return new Slice(0, size, true);
+    }
+
+    /*
+     * Up to parts slices of the top-level array, in file order. Fewer are returned
+     * when the array has fewer elements than parts.
+     */
+    public List<Slice> split(int parts) throws IOException {
+        if (parts <= 1) {
+            return Collections.singletonList(all());
+        }
+
+        long target = size / parts;
+        List<Slice> slices = new ArrayList<>(parts);
+        long sliceStart = -1;
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+
+        for (long windowStart = 0; windowStart < size; windowStart += WINDOW_BYTES) {
+            MappedByteBuffer window = map(windowStart, Math.min(WINDOW_BYTES, size - windowStart));
+            for (int i = 0; i < window.limit(); i++) {
+                byte b = window.get(i);
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+
+                long position = windowStart + i;
+                switch (b) {
+                    case '"':
+                        inString = true;
+                        break;
+                    case '[':
+                    case '{':
+                        if (depth++ == 0) {
+                            if (b != '[') {
+                                throw new IOException("Expected a top-level JSON array in " + file);
+                            }
+                            sliceStart = position + 1;
+                        }
+                        break;
+                    case ']':
+                    case '}':
+                        if (--depth == 0) {
+                            slices.add(new Slice(sliceStart, position, false));
+                            return slices;
+                        }
+                        break;
+                    case ',':
+                        // an element ends here, cut if the slice is big enough and more are left to make
+                        if (depth == 1 && position - sliceStart >= target && slices.size() < parts - 1) {
+                            slices.add(new Slice(sliceStart, position, false));
+                            sliceStart = position + 1;
+                        }
+                        break;
+                    default:
+                        if (depth == 0 && !Character.isWhitespace(b)) {
+                            throw new IOException("Expected a top-level JSON array in " + file);
+                        }
+                }
+            }
+        }
+        throw new IOException("Unterminated JSON array in " + file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private MappedByteBuffer map(long position, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+    }
+
+    /*
+     * Reads a byte range of the file one mapped window at a time.
+     */
+    private class MappedInputStream extends InputStream {
+        private final long end;
+        private long windowStart;
+        private MappedByteBuffer window;
+
+        MappedInputStream(long start, long end) {
+            this.end = end;
+            this.windowStart = start;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (window == null || !window.hasRemaining()) {
+                if (window != null) {
+                    windowStart += window.limit();
+                }
+                if (windowStart >= end) {
+                    return -1;
+                }
+                window = map(windowStart, Math.min(WINDOW_BYTES, end - windowStart));
+            }
+            int count = Math.min(length, window.remaining());
+            window.get(buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return window == null ? 0 : window.remaining();
+        }
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Wraps a QueryExecutor and keeps, per operation and class, the number of
+ * queries, their latencies, the bytes sent and received and the errors by
+ * exception class. The operation is the outermost function of the query as it
+ * goes over the wire (create, foreach, paginate, map, create_index, ...) and
+ * the class is the first Class(...) it refers to, or else the first Index(...).
+ *
+ * Finding those means serializing the query on our side, into a byte counter
+ * rather than a tree, and only as far as needed: the probe stops at the first
+ * class name, which in a batch (Foreach) is in the lambda, ahead of the
+ * records. A batch is then not serialized once more just for the metrics.
+ *
+ * Bytes sent and received need whole queries and responses serialized once
+ * more, so they are only counted (as JSON, not HTTP messages) when
+ * measurePayloads is set.
+ *
+ * The metrics are available from getOperations(), over JMX once register() has
+ * been called, and as a periodic log summary with startLogging().
+ */
+public class MeteredQueryExecutor implements QueryExecutor, QueryMetricsMXBean {
+    private static final Logger logger = LoggerFactory.getLogger(MeteredQueryExecutor.class);
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static class Stats {
+        final String operation;
+        final String target;
+        final LongAdder queries = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytesSent = new LongAdder();
+        final LongAdder bytesReceived = new LongAdder();
+        final ConcurrentHashMap<String, LongAdder> errorTypes = new ConcurrentHashMap<>();
+        final LatencyRecorder latencies = new LatencyRecorder();
+
+        Stats(String operation, String target) {
+            this.operation = operation;
+            this.target = target;
+        }
+
+        OperationMetrics snapshot() {
+            Map<String, Long> types = new LinkedHashMap<>();
+            errorTypes.forEach((type, count) -> types.put(type, count.sum()));
+            return new OperationMetrics(operation, target, queries.sum(), errors.sum(), types,
+                    bytesSent.sum(), bytesReceived.sum(), latencies.percentile(0.50), latencies.percentile(0.99));
+        }
+    }
+
+    /*
+     * Counts what is written to it and throws it away.
+     */
+    private static class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    /*
+     * Thrown by a Probe to stop serializing once it has found what it looks for.
+     */
+    private static class Found extends IOException {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /*
+     * Serializes a query into a CountingStream, noting on the way the first field
+     * name of the outermost object (the operation) and the first string written
+     * as the value of a "class" field, or else of an "index" field (the target).
+     * With stopEarly it gives up on the rest of the query once it has both the
+     * operation and a class, so out only counts the whole query without it.
+     */
+    private static class Probe extends JsonGeneratorDelegate {
+        final CountingStream out;
+        final boolean stopEarly;
+        String operation;
+        String className;
+        String indexName;
+        private String lastField;
+
+        Probe(JsonGenerator generator, CountingStream out, boolean stopEarly) {
+            super(generator, false);
+            this.out = out;
+            this.stopEarly = stopEarly;
+        }
+
+        @Override
+        public void writeStartArray() throws IOException {
+            array();
+            super.writeStartArray();
+        }
+
+        @Override
+        public void writeStartArray(int size) throws IOException {
+            array();
+            super.writeStartArray(size);
+        }
+
+        @Override
+        public void writeFieldName(String name) throws IOException {
+            field(name);
+            super.writeFieldName(name);
+        }
+
+        @Override
+        public void writeFieldName(SerializableString name) throws IOException {
+            field(name.getValue());
+            super.writeFieldName(name);
+        }
+
+        @Override
+        public void writeString(String text) throws IOException {
+            value(text);
+            super.writeString(text);
+        }
+
+        @Override
+        public void writeString(SerializableString text) throws IOException {
+            value(text.getValue());
+            super.writeString(text);
+        }
+
+        private void array() {
+            if (operation == null && getOutputContext().inRoot()) {
+                operation = "array";
+            }
+        }
+
+        private void field(String name) {
+            if (operation == null && getOutputContext().getParent().inRoot()) {
+                operation = name;
+            }
+            lastField = name;
+        }
+
+        private void value(String text) throws IOException {
+            if (className == null && "class".equals(lastField)) {
+                className = text;
+                if (stopEarly && operation != null) {
+                    throw new Found();
+                }
+            } else if (indexName == null && "index".equals(lastField)) {
+                indexName = text;
+            }
+            lastField = null;
+        }
+
+        String target() {
+            return className != null ? className : indexName != null ? indexName : "-";
+        }
+    }
+
+    private final QueryExecutor delegate;
+    private final boolean measurePayloads;
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> logging;
+
+    public MeteredQueryExecutor(QueryExecutor delegate) {
+        this(delegate, false);
+    }
+
+    public MeteredQueryExecutor(QueryExecutor delegate, boolean measurePayloads) {
+        this.delegate = delegate;
+        this.measurePayloads = measurePayloads;
+    }
+
+    @Override
+    public CompletableFuture<Value> query(Expr expr) {
+        Probe probe = probe(expr, !measurePayloads);
+        Stats stats = statsFor(probe.operation != null ? probe.operation : "value", probe.target());
+        stats.queries.increment();
+        if (measurePayloads) {
+            stats.bytesSent.add(probe.out.count);
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<Value> result;
+        try {
+            result = delegate.query(expr);
+        } catch (RuntimeException e) {
+            failed(stats, e);
+            throw e;
+        }
+        return result.whenComplete((value, error) -> {
+            stats.latencies.record(System.nanoTime() - start);
+            if (error != null) {
+                failed(stats, BulkLoader.unwrap(error));
+            } else if (measurePayloads) {
+                stats.bytesReceived.add(sizeOf(value));
+            }
+        });
+    }
+
+    /*
+     * Makes the metrics visible over JMX as fauna.techexercise:type=QueryMetrics,name=<name>.
+     */
+    public MeteredQueryExecutor register(String name) throws Exception {
+        ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(this, new ObjectName("fauna.techexercise:type=QueryMetrics,name=" + ObjectName.quote(name)));
+        return this;
+    }
+
+    /*
+     * Logs the metrics of every operation that saw queries since the last summary.
+     */
+    public synchronized void startLogging(ScheduledExecutorService scheduler, long periodMillis) {
+        if (logging != null) {
+            throw new IllegalStateException("Already logging");
+        }
+        Map<String, Long> lastCounts = new ConcurrentHashMap<>();
+        logging = scheduler.scheduleAtFixedRate(() -> {
+            for (OperationMetrics operation : getOperations()) {
+                String key = operation.getOperation() + " " + operation.getTarget();
+                Long last = lastCounts.put(key, operation.getQueries());
+                if (last == null || last != operation.getQueries()) {
+                    logger.info("{}", operation);
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopLogging() {
+        if (logging != null) {
+            logging.cancel(false);
+            logging = null;
+        }
+    }
+
+    @Override
+    public long getQueries() {
+        long total = 0;
+        for (Stats s : stats.values()) {
+            total += s.queries.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getErrors() {
+        long total = 0;
+        for (Stats s : stats.values()) {
+            total += s.errors.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesSent() {
+        long total = 0;
+        for (Stats s : stats.values()) {
+            total += s.bytesSent.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesReceived() {
+        long total = 0;
+        for (Stats s : stats.values()) {
+            total += s.bytesReceived.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public List<OperationMetrics> getOperations() {
+        List<OperationMetrics> operations = new ArrayList<>(stats.size());
+        for (Stats s : stats.values()) {
+            operations.add(s.snapshot());
+        }
+        operations.sort((a, b) -> Long.compare(b.getQueries(), a.getQueries()));
+        return operations;
+    }
+
+    @Override
+    public void reset() {
+        stats.clear();
+    }
+
+    private Stats statsFor(String operation, String target) {
+        return stats.computeIfAbsent(operation + " " + target, key -> new Stats(operation, target));
+    }
+
+    private static void failed(Stats stats, Throwable error) {
+        stats.errors.increment();
+        stats.errorTypes.computeIfAbsent(error.getClass().getSimpleName(), type -> new LongAdder()).increment();
+    }
+
+    private static Probe probe(Expr expr, boolean stopEarly) {
+        CountingStream out = new CountingStream();
+        Probe probe;
+        try {
+            probe = new Probe(mapper.getFactory().createGenerator(out), out, stopEarly);
+        } catch (IOException e) {
+            return new Probe(null, out, stopEarly);
+        }
+        try {
+            mapper.writeValue(probe, expr);
+        } catch (IOException e) {
+            // Found, or a query the driver will fail to send as well; keep what was seen
+        }
+        try {
+            probe.close();
+        } catch (IOException e) {
+            // nothing was written anywhere, nothing to lose
+        }
+        return probe;
+    }
+
+    private static long sizeOf(Value value) {
+        CountingStream out = new CountingStream();
+        try {
+            mapper.writeValue(out, value);
+        } catch (IOException e) {
+            return 0;
+        }
+        return out.count;
+    }
+}
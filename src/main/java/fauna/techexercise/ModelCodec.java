@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import com.faunadb.client.types.Value;
+import com.faunadb.client.types.Value.BooleanV;
+import com.faunadb.client.types.Value.DoubleV;
+import com.faunadb.client.types.Value.LongV;
+import com.faunadb.client.types.Value.NullV;
+import com.faunadb.client.types.Value.StringV;
+
+import java.io.IOException;
+
+/*
+ * Hand-written conversions of a model class to and from JSON tokens and the
+ * driver's Values, for the paths that handle every document of a class. Unlike
+ * Jackson binding or Field.at("data").to(Product.class) nothing is looked up
+ * by reflection, and read() binds straight from the tokens without building a
+ * JsonNode or Value tree first.
+ *
+ * Fields the model does not know are skipped. Numbers are coerced the way
+ * Jackson does it for the model classes (a float read into an int field is
+ * truncated) so both ways give the same objects.
+ */
+public interface ModelCodec<T> extends JsonArrayReader.ElementReader<T> {
+
+    /*
+     * Binds the object starting at the parser's current token (or the next one
+     * if the parser has not been advanced yet), leaving the parser on its END_OBJECT.
+     */
+    @Override
+    T read(JsonParser parser) throws IOException;
+
+    void write(JsonGenerator generator, T value) throws IOException;
+
+    /*
+     * Binds the data of a document, what Select("data", Get(ref)) returns.
+     */
+    T decode(Value data);
+
+    Value encode(T value);
+
+    static void startObject(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object but found " + token);
+        }
+    }
+
+    static int intValue(Value value) {
+        if (value instanceof LongV) {
+            return value.to(Long.class).get().intValue();
+        }
+        if (value instanceof DoubleV) {
+            return value.to(Double.class).get().intValue();
+        }
+        return 0;
+    }
+
+    static boolean booleanValue(Value value) {
+        return value instanceof BooleanV && value.to(Boolean.class).get();
+    }
+
+    static String stringValue(Value value) {
+        if (value == null || value instanceof NullV) {
+            return null;
+        }
+        if (value instanceof StringV) {
+            return value.to(String.class).get();
+        }
+        if (value instanceof LongV) {
+            return String.valueOf(value.to(Long.class).get());
+        }
+        if (value instanceof DoubleV) {
+            return String.valueOf(value.to(Double.class).get());
+        }
+        return value.toString();
+    }
+
+    static Value stringOf(String value) {
+        return value == null ? NullV.NULL : new StringV(value);
+    }
+
+    static void writeString(JsonGenerator generator, String name, String value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(name);
+        } else {
+            generator.writeStringField(name, value);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * The field that identifies a document of a Northwind class (productID for
+ * products, ...), and the unique index to find it by. The loaders upsert by it
+ * (BulkLoader.upsertBy) and EntityRepository looks documents up through it.
+ * The indexes are named <singular>_lookup_by_<key>, apart from the values
+ * indexes that range scans page through (products_by_product_id).
+ */
+public class NaturalKey {
+    private static final Map<String, NaturalKey> KEYS = new HashMap<>();
+
+    static {
+        add(new NaturalKey("categories", "category_lookup_by_category_id", "categoryID"));
+        add(new NaturalKey("products", "product_lookup_by_product_id", "productID"));
+        add(new NaturalKey("customers", "customer_lookup_by_customer_id", "customerID"));
+        add(new NaturalKey("employees", "employee_lookup_by_employee_id", "employeeID"));
+        add(new NaturalKey("orders", "order_lookup_by_order_id", "orderID"));
+        add(new NaturalKey("regions", "region_lookup_by_region_id", "regionID"));
+        add(new NaturalKey("shippers", "shipper_lookup_by_shipper_id", "shipperID"));
+        add(new NaturalKey("suppliers", "supplier_lookup_by_supplier_id", "supplierID"));
+    }
+
+    private final String className;
+    private final String indexName;
+    private final String field;
+
+    public NaturalKey(String className, String indexName, String field) {
+        this.className = className;
+        this.indexName = indexName;
+        this.field = field;
+    }
+
+    private static void add(NaturalKey key) {
+        KEYS.put(key.className, key);
+    }
+
+    /*
+     * The natural key of the class, or null if it has none.
+     */
+    public static NaturalKey forClass(String className) {
+        return KEYS.get(className);
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    /*
+     * The unique index on the key, for Schema.withIndex().
+     */
+    public Schema.IndexDef definition() {
+        return Schema.index(indexName, className).term("data", field).unique();
+    }
+
+    @Override
+    public String toString() {
+        return className + "." + field + " (" + indexName + ")";
+    }
+}
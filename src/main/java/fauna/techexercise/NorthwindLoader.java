@@ -0,0 +1,257 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import com.faunadb.client.types.Value;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/*
+ * Loads every *.json file of a Northwind style directory, one class per file
+ * (orders.json -> "orders"), creating the classes, their <class>_all indexes
+ * and their natural key indexes first.
+ *
+ * Classes run side by side on a shared executor. They do not wait for each
+ * other: records keep their foreign keys (categoryID, customerID, ...) as plain
+ * values, nothing is resolved to a Ref while loading, so the order in which
+ * classes land does not matter. Files bigger than partitionThresholdBytes are
+ * additionally split across several workers, each parsing its own byte range of
+ * the memory-mapped file (see MappedJsonSource), so the largest file no longer
+ * dictates the total load time on its own.
+ *
+ * Records of a class with a NaturalKey are upserted by it. With checkpointTo()
+ * each slice keeps its own LoadCheckpoint, so a failed run can be started again
+ * and resumes every slice from its mark, rewriting at most what was in flight.
+ *
+ * All of those loads go through one BulkLoader, so they share a single
+ * adaptive window of at most maxInFlight queries: it measures the cluster as a
+ * whole, and the loads never together queue more queries in the client than
+ * the window allows.
+ *
+ * Records are encoded straight from JSON (see JsonValueEncoder); for classes
+ * that have a model class it is used to validate each record.
+ */
+public class NorthwindLoader {
+    private static final Logger logger = LoggerFactory.getLogger(NorthwindLoader.class);
+
+    private static final Map<String, Class<?>> MODELS = new HashMap<>();
+
+    static {
+        MODELS.put("categories", Category.class);
+        MODELS.put("products", Product.class);
+        MODELS.put("customers", Customer.class);
+    }
+
+    private static ObjectMapper mapper = getMapper();
+
+    private static ObjectMapper getMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        return mapper;
+    }
+
+    private final QueryExecutor executor;
+    private final ExecutorService workers;
+    private final BulkLoader loader;
+    private final int partitions;
+    private final long partitionThresholdBytes;
+    private final long indexTimeoutMillis;
+    private File checkpointDirectory;
+    private String checkpointTarget;
+    private long checkpointIntervalMillis;
+
+    public NorthwindLoader(QueryExecutor executor,
+                           ExecutorService workers,
+                           int maxInFlight,
+                           int batchSize,
+                           int maxBatchBytes,
+                           int partitions,
+                           long partitionThresholdBytes,
+                           long indexTimeoutMillis) {
+        this.executor = executor;
+        this.workers = workers;
+        this.loader = new BulkLoader(executor, maxInFlight, batchSize, maxBatchBytes);
+        this.partitions = Math.max(1, partitions);
+        this.partitionThresholdBytes = partitionThresholdBytes;
+        this.indexTimeoutMillis = indexTimeoutMillis;
+    }
+
+    /*
+     * Keeps a checkpoint per slice of every file in directory, for loads into
+     * target (see FaunaClientFactory.getTarget()), saved every intervalMillis.
+     */
+    public NorthwindLoader checkpointTo(File directory, String target, long intervalMillis) {
+        this.checkpointDirectory = directory;
+        this.checkpointTarget = target;
+        this.checkpointIntervalMillis = intervalMillis;
+        return this;
+    }
+
+    /*
+     * Number of worker threads loadAll needs to never starve itself: one per class
+     * plus the extra partitions of a split file.
+     */
+    public static int threadsFor(File directory, int partitions) {
+        return jsonFiles(directory).size() + Math.max(0, partitions - 1);
+    }
+
+    public Map<String, LoadReport> loadAll(File directory) throws Exception {
+        Map<String, File> files = new LinkedHashMap<>();
+        for (File file : jsonFiles(directory)) {
+            files.put(className(file), file);
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No .json files found in " + directory);
+        }
+
+        /*
+         * All classes, <class>_all and natural key indexes are provisioned up front,
+         * in two queries, and only the ones that are missing get created.
+         */
+        Schema schema = new Schema();
+        for (String className : files.keySet()) {
+            schema.withClassAndAllIndex(className);
+            NaturalKey naturalKey = NaturalKey.forClass(className);
+            if (naturalKey != null) {
+                schema.withIndex(naturalKey.definition());
+            }
+        }
+        schema.apply(executor, indexTimeoutMillis);
+
+        Map<String, CompletableFuture<LoadReport>> loads = new LinkedHashMap<>();
+        for (Map.Entry<String, File> file : files.entrySet()) {
+            loads.put(file.getKey(), CompletableFuture.supplyAsync(() -> loadFile(file.getKey(), file.getValue()), workers));
+        }
+
+        Map<String, LoadReport> reports = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<LoadReport>> load : loads.entrySet()) {
+            try {
+                reports.put(load.getKey(), load.getValue().join());
+            } catch (CompletionException e) {
+                throw new IllegalStateException("Loading " + load.getKey() + " failed", BulkLoader.unwrap(e));
+            }
+        }
+        return reports;
+    }
+
+    private LoadReport loadFile(String className, File file) {
+        int parts = file.length() > partitionThresholdBytes ? partitions : 1;
+
+        try (MappedJsonSource source = MappedJsonSource.open(file)) {
+            List<MappedJsonSource.Slice> slices = source.split(parts);
+
+            /*
+             * The extra slices go to other workers, the current one takes the first
+             * slice itself and then waits for the rest. It waits for them even if
+             * its own slice fails, as they read from the source closed below.
+             */
+            List<CompletableFuture<LoadReport>> others = new ArrayList<>();
+            for (int i = 1; i < slices.size(); i++) {
+                int part = i;
+                others.add(CompletableFuture.supplyAsync(() -> loadSlice(className, file, slices, part), workers));
+            }
+
+            List<LoadReport> reports = new ArrayList<>(slices.size());
+            try {
+                reports.add(loadSlice(className, file, slices, 0));
+            } finally {
+                CompletableFuture.allOf(others.toArray(new CompletableFuture[0]))
+                        .handle((ignored, error) -> null)
+                        .join();
+            }
+            for (CompletableFuture<LoadReport> other : others) {
+                reports.add(other.join());
+            }
+
+            LoadReport report = LoadReport.combine(className, reports);
+            logger.info("Loaded {} from {} slice(s)", report, slices.size());
+            return report;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private LoadReport loadSlice(String className, File file, List<MappedJsonSource.Slice> slices, int part) {
+        Class<?> model = MODELS.get(className);
+        ObjectReader schema = model == null ? null : mapper.readerFor(model);
+
+        try {
+            LoadCheckpoint checkpoint = checkpointFor(className, file, part, slices.size());
+            if (checkpoint != null && checkpoint.isComplete()) {
+                logger.info("{} slice {} of {} is already loaded", className, part + 1, slices.size());
+                return new LoadReport(className, 0, Collections.emptyList(), 0, new LatencyRecorder());
+            }
+            try (JsonArrayReader<Value> reader = slices.get(part).reader(mapper.getFactory(), new JsonValueEncoder(schema))) {
+                if (checkpoint != null) {
+                    for (long i = 0; i < checkpoint.getRecords() && reader.hasNext(); i++) {
+                        reader.skip();
+                    }
+                }
+                return loader.load(className, reader, checkpoint, NaturalKey.forClass(className));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    /*
+     * The checkpoint of one slice. The number of slices is part of its name, as
+     * record counts only carry over between runs that split the file the same way.
+     */
+    private LoadCheckpoint checkpointFor(String className, File file, int part, int parts) throws IOException {
+        if (checkpointDirectory == null) {
+            return null;
+        }
+        File checkpoint = new File(checkpointDirectory, className + "." + (part + 1) + "-of-" + parts + ".checkpoint");
+        return LoadCheckpoint.open(checkpoint, className, file, checkpointTarget, checkpointIntervalMillis);
+    }
+
+    private static List<File> jsonFiles(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private static String className(File file) {
+        String name = file.getName();
+        return name.substring(0, name.length() - ".json".length());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import java.beans.ConstructorProperties;
+import java.util.Map;
+
+/*
+ * A snapshot of the metrics of one operation (create, paginate, create_index,
+ * ...) on one class or index, as reported by MeteredQueryExecutor.
+ */
+public class OperationMetrics {
+    private final String operation;
+    private final String target;
+    private final long queries;
+    private final long errors;
+    private final Map<String, Long> errorTypes;
+    private final long bytesSent;
+    private final long bytesReceived;
+    private final double p50Millis;
+    private final double p99Millis;
+
+    @ConstructorProperties({"operation", "target", "queries", "errors", "errorTypes",
+            "bytesSent", "bytesReceived", "p50Millis", "p99Millis"})
+    public OperationMetrics(String operation,
+                            String target,
+                            long queries,
+                            long errors,
+                            Map<String, Long> errorTypes,
+                            long bytesSent,
+                            long bytesReceived,
+                            double p50Millis,
+                            double p99Millis) {
+        this.operation = operation;
+        this.target = target;
+        this.queries = queries;
+        this.errors = errors;
+        this.errorTypes = errorTypes;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.p50Millis = p50Millis;
+        this.p99Millis = p99Millis;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public long getQueries() {
+        return queries;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /*
+     * Error counts by exception class, e.g. BadRequestException or TimeoutException.
+     */
+    public Map<String, Long> getErrorTypes() {
+        return errorTypes;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s: %d queries, %d errors %s, %d bytes out, %d bytes in, p50 %.2f ms, p99 %.2f ms",
+                operation, target, queries, errors, errorTypes, bytesSent, bytesReceived, p50Millis, p99Millis);
+    }
+}
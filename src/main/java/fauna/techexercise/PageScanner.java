@@ -0,0 +1,271 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Field;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * Walks a set (typically Match(Index(name)) on a values only index) page by page
+ * and hands the rows out one at a time as an Iterator or a Stream.
+ *
+ * As soon as a page arrives the request for the next one (using its after
+ * cursor) is sent, so the network round trip overlaps with whatever the
+ * consumer does with the current page.
+ *
+ * The page size can adapt to the observed latency: pages that come back well
+ * under targetPageMillis double the size of the next request, pages that take
+ * longer halve it, always within [minPageSize, maxPageSize].
+ *
+ * NOTE: after is inclusive of the value, the cursor FaunaDB returns already
+ * accounts for that.
+ */
+public class PageScanner implements Iterator<Value> {
+
+    /*
+     * Lambda applied to each entry of the page. The default returns the data of
+     * the document the index entry points to.
+     */
+    public static final Expr DOCUMENT_DATA = Lambda(Value("x"), Select(Value("data"), Get(Var("x"))));
+
+    public static class Builder {
+        private final QueryExecutor executor;
+        private final Expr set;
+        private Expr rowLambda = DOCUMENT_DATA;
+        private Expr startAfter = null;
+        private Expr endBefore = null;
+        private int pageSize = 64;
+        private int minPageSize = 64;
+        private int maxPageSize = 64;
+        private long targetPageMillis = 0;
+
+        private Builder(QueryExecutor executor, Expr set) {
+            this.executor = executor;
+            this.set = set;
+        }
+
+        /*
+         * Lambda mapped over each page, or null to return the raw index entries.
+         */
+        public Builder withRowLambda(Expr rowLambda) {
+            this.rowLambda = rowLambda;
+            return this;
+        }
+
+        /*
+         * Start the scan at the given cursor instead of at the beginning of the set.
+         * For a values index a prefix of the values works, e.g. Arr(Value(10)).
+         */
+        public Builder startingAfter(Expr cursor) {
+            this.startAfter = cursor;
+            return this;
+        }
+
+        /*
+         * Stop the scan before the given cursor, e.g. Arr(Value(20)) for the
+         * entries whose first value is below 20, so that the last page does not
+         * go on to fetch (and map) entries past the end.
+         */
+        public Builder endingBefore(Expr cursor) {
+            this.endBefore = cursor;
+            return this;
+        }
+
+        public Builder withPageSize(int pageSize) {
+            this.pageSize = pageSize;
+            this.minPageSize = pageSize;
+            this.maxPageSize = pageSize;
+            return this;
+        }
+
+        /*
+         * Let the page size float between minPageSize and maxPageSize, aiming for
+         * pages that take about targetPageMillis to fetch.
+         */
+        public Builder withAdaptivePageSize(int minPageSize, int maxPageSize, long targetPageMillis) {
+            if (minPageSize < 1 || maxPageSize < minPageSize || targetPageMillis < 1) {
+                throw new IllegalArgumentException("Invalid adaptive page size: min " + minPageSize
+                        + ", max " + maxPageSize + ", target " + targetPageMillis + " ms");
+            }
+            this.minPageSize = minPageSize;
+            this.maxPageSize = maxPageSize;
+            this.pageSize = Math.min(Math.max(pageSize, minPageSize), maxPageSize);
+            this.targetPageMillis = targetPageMillis;
+            return this;
+        }
+
+        public PageScanner build() {
+            if (pageSize < 1) {
+                throw new IllegalArgumentException("pageSize must be at least 1, got " + pageSize);
+            }
+            return new PageScanner(this);
+        }
+    }
+
+    private static class Page {
+        final List<Value> rows;
+        final Optional<Value> after;
+        final long elapsedNanos;
+
+        Page(List<Value> rows, Optional<Value> after, long elapsedNanos) {
+            this.rows = rows;
+            this.after = after;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    private final QueryExecutor executor;
+    private final Expr set;
+    private final Expr endBefore;
+    private final Expr rowLambda;
+    private final int minPageSize;
+    private final int maxPageSize;
+    private final long targetPageNanos;
+
+    private int pageSize;
+    private Iterator<Value> rows = Collections.emptyIterator();
+    private CompletableFuture<Page> nextPage;
+    private Optional<Value> cursor = Optional.empty();
+    private long pagesFetched = 0;
+    private long rowsReturned = 0;
+
+    public static Builder builder(QueryExecutor executor, Expr set) {
+        return new Builder(executor, set);
+    }
+
+    private PageScanner(Builder builder) {
+        this.executor = builder.executor;
+        this.set = builder.set;
+        this.endBefore = builder.endBefore;
+        this.rowLambda = builder.rowLambda;
+        this.pageSize = builder.pageSize;
+        this.minPageSize = builder.minPageSize;
+        this.maxPageSize = builder.maxPageSize;
+        this.targetPageNanos = TimeUnit.MILLISECONDS.toNanos(builder.targetPageMillis);
+
+        this.nextPage = fetch(builder.startAfter, pageSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!rows.hasNext()) {
+            if (nextPage == null) {
+                return false;
+            }
+
+            Page page = await(nextPage);
+            pagesFetched++;
+            cursor = page.after;
+            adapt(page);
+
+            // Ask for the following page before handing out the rows of this one
+            nextPage = page.after.isPresent() ? fetch(page.after.get(), pageSize) : null;
+            rows = page.rows.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public Value next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        rowsReturned++;
+        return rows.next();
+    }
+
+    public Stream<Value> stream() {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+                false);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public long getPagesFetched() {
+        return pagesFetched;
+    }
+
+    public long getRowsReturned() {
+        return rowsReturned;
+    }
+
+    /*
+     * The after cursor of the last page received, empty once the scan is complete.
+     */
+    public Optional<Value> getCursor() {
+        return cursor;
+    }
+
+    private CompletableFuture<Page> fetch(Expr after, int size) {
+        Pagination paginationExpr = Paginate(set).size(Value(size));
+        if (after != null) {
+            paginationExpr = paginationExpr.after(after);
+        }
+        if (endBefore != null) {
+            paginationExpr = paginationExpr.before(endBefore);
+        }
+        Expr query = rowLambda == null ? paginationExpr : Map(paginationExpr, rowLambda);
+
+        long sent = System.nanoTime();
+        return executor.query(query).thenApply(result -> {
+            Collection<Value> data = result.at("data").asCollectionOf(Value.class).get();
+            return new Page(new ArrayList<>(data), result.getOptional(Field.at("after")), System.nanoTime() - sent);
+        });
+    }
+
+    private void adapt(Page page) {
+        if (targetPageNanos == 0) {
+            return;
+        }
+        if (page.elapsedNanos < targetPageNanos / 2) {
+            pageSize = Math.min(maxPageSize, pageSize * 2);
+        } else if (page.elapsedNanos > targetPageNanos) {
+            pageSize = Math.max(minPageSize, pageSize / 2);
+        }
+    }
+
+    private static Page await(CompletableFuture<Page> page) {
+        try {
+            return page.join();
+        } catch (CompletionException e) {
+            Throwable cause = BulkLoader.unwrap(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+}
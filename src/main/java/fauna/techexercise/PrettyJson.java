@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/*
+ * Renders a value as pretty printed JSON only when it is turned into a String.
+ * Passed as a logger argument, e.g.
+ *
+ *   logger.debug("Result: {}", PrettyJson.of(page));
+ *
+ * the serialization only happens if the level is enabled, instead of on every
+ * call the way logger.debug("Result: {}", toPrettyJson(page)) does.
+ */
+public final class PrettyJson {
+    private static final ObjectWriter writer = new ObjectMapper().writerWithDefaultPrettyPrinter();
+
+    private final Object value;
+
+    private PrettyJson(Object value) {
+        this.value = value;
+    }
+
+    public static PrettyJson of(Object value) {
+        return new PrettyJson(value);
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return writer.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return String.valueOf(value);
+        }
+    }
+}
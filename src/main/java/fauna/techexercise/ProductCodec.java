@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import com.faunadb.client.types.Value;
+import com.faunadb.client.types.Value.BooleanV;
+import com.faunadb.client.types.Value.LongV;
+import com.faunadb.client.types.Value.ObjectV;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static fauna.techexercise.ModelCodec.*;
+
+/*
+ * Product without reflection, see ModelCodec.
+ */
+public class ProductCodec implements ModelCodec<Product> {
+    public static final ProductCodec INSTANCE = new ProductCodec();
+
+    @Override
+    public Product read(JsonParser parser) throws IOException {
+        startObject(parser);
+        Product product = new Product();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch (name) {
+                case "productID":
+                    product.setProductID(parser.getValueAsInt());
+                    break;
+                case "supplierID":
+                    product.setSupplierID(parser.getValueAsInt());
+                    break;
+                case "categoryID":
+                    product.setCategoryID(parser.getValueAsInt());
+                    break;
+                case "quantityPerUnit":
+                    product.setQuantityPerUnit(parser.getValueAsString());
+                    break;
+                case "unitPrice":
+                    product.setUnitPrice(parser.getValueAsInt());
+                    break;
+                case "unitsInStock":
+                    product.setUnitsInStock(parser.getValueAsInt());
+                    break;
+                case "unitsOnOrder":
+                    product.setUnitsOnOrder(parser.getValueAsInt());
+                    break;
+                case "reorderLevel":
+                    product.setReorderLevel(parser.getValueAsInt());
+                    break;
+                case "discontinued":
+                    product.setDiscontinued(parser.getValueAsBoolean());
+                    break;
+                case "name":
+                    product.setName(parser.getValueAsString());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return product;
+    }
+
+    @Override
+    public void write(JsonGenerator generator, Product product) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("productID", product.getProductID());
+        generator.writeNumberField("supplierID", product.getSupplierID());
+        generator.writeNumberField("categoryID", product.getCategoryID());
+        writeString(generator, "quantityPerUnit", product.getQuantityPerUnit());
+        generator.writeNumberField("unitPrice", product.getUnitPrice());
+        generator.writeNumberField("unitsInStock", product.getUnitsInStock());
+        generator.writeNumberField("unitsOnOrder", product.getUnitsOnOrder());
+        generator.writeNumberField("reorderLevel", product.getReorderLevel());
+        generator.writeBooleanField("discontinued", product.isDiscontinued());
+        writeString(generator, "name", product.getName());
+        generator.writeEndObject();
+    }
+
+    @Override
+    public Product decode(Value data) {
+        Map<String, Value> fields = data.asMapOf(Value.class).get();
+        return new Product(
+                intValue(fields.get("productID")),
+                intValue(fields.get("supplierID")),
+                intValue(fields.get("categoryID")),
+                stringValue(fields.get("quantityPerUnit")),
+                intValue(fields.get("unitPrice")),
+                intValue(fields.get("unitsInStock")),
+                intValue(fields.get("unitsOnOrder")),
+                intValue(fields.get("reorderLevel")),
+                booleanValue(fields.get("discontinued")),
+                stringValue(fields.get("name"))
+        );
+    }
+
+    @Override
+    public Value encode(Product product) {
+        Map<String, Value> fields = new LinkedHashMap<>();
+        fields.put("productID", new LongV(product.getProductID()));
+        fields.put("supplierID", new LongV(product.getSupplierID()));
+        fields.put("categoryID", new LongV(product.getCategoryID()));
+        fields.put("quantityPerUnit", stringOf(product.getQuantityPerUnit()));
+        fields.put("unitPrice", new LongV(product.getUnitPrice()));
+        fields.put("unitsInStock", new LongV(product.getUnitsInStock()));
+        fields.put("unitsOnOrder", new LongV(product.getUnitsOnOrder()));
+        fields.put("reorderLevel", new LongV(product.getReorderLevel()));
+        fields.put("discontinued", product.isDiscontinued() ? BooleanV.TRUE : BooleanV.FALSE);
+        fields.put("name", stringOf(product.getName()));
+        return new ObjectV(fields);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.faunadb.client.types.Value;
+
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * The part of a Product a list view shows, read from a covering index instead
+ * of the documents. SUMMARIES lists all products by productID, BY_CATEGORY
+ * the products of one category.
+ */
+public class ProductSummary {
+    static final CoveringIndex<ProductSummary> SUMMARIES = new CoveringIndex<>(
+            "products_summary", "products",
+            Arrays.asList("productID", "name", "unitPrice", "categoryID"),
+            ProductSummary::fromTuple);
+
+    static final CoveringIndex<ProductSummary> BY_CATEGORY = new CoveringIndex<>(
+            "products_summary_by_category_id", "products", "categoryID",
+            Arrays.asList("productID", "name", "unitPrice", "categoryID"),
+            ProductSummary::fromTuple);
+
+    private final int productID;
+    private final String name;
+    private final double unitPrice;
+    private final int categoryID;
+    private final Value ref;
+
+    public ProductSummary(int productID, String name, double unitPrice, int categoryID, Value ref) {
+        this.productID = productID;
+        this.name = name;
+        this.unitPrice = unitPrice;
+        this.categoryID = categoryID;
+        this.ref = ref;
+    }
+
+    /*
+     * unitPrice is whole in some records and not in others, depending on how they were loaded.
+     */
+    static ProductSummary fromTuple(List<Value> tuple) {
+        return new ProductSummary(
+                tuple.get(0).to(Long.class).get().intValue(),
+                tuple.get(1).to(String.class).get(),
+                CoveringIndex.number(tuple.get(2)),
+                tuple.get(3).to(Long.class).get().intValue(),
+                tuple.get(4));
+    }
+
+    public int getProductID() {
+        return productID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public int getCategoryID() {
+        return categoryID;
+    }
+
+    public Value getRef() {
+        return ref;
+    }
+
+    @Override
+    public String toString() {
+        return productID + " " + name + " (" + unitPrice + ", category " + categoryID + ")";
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static fauna.techexercise.ModelCodec.startObject;
+
+/*
+ * Many products held as one array per field instead of one Product object per
+ * product: the ints are packed in int[]s, discontinued in a BitSet, and only
+ * the two strings remain objects. A full-class scan fills it straight from the
+ * JSON tokens, so nothing is allocated per product apart from its strings, and
+ * a large table costs the GC a dozen arrays rather than millions of objects.
+ *
+ * Rows are read through a Row flyweight that is moved from row to row,
+ *
+ *   ProductTable.Row row = table.row();
+ *   for (int i = 0; i < table.size(); i++) {
+ *       value += row.moveTo(i).getUnitPrice() * row.getUnitsInStock();
+ *   }
+ *
+ * or copied out as a Product with get(row) where an object is needed.
+ * ColumnarSnapshot does the same for order details.
+ */
+public class ProductTable {
+    private int size = 0;
+    private int[] productID;
+    private int[] supplierID;
+    private int[] categoryID;
+    private int[] unitPrice;
+    private int[] unitsInStock;
+    private int[] unitsOnOrder;
+    private int[] reorderLevel;
+    private final BitSet discontinued = new BitSet();
+    private String[] quantityPerUnit;
+    private String[] name;
+
+    /*
+     * A view of one row of the table. Moving it does not allocate.
+     */
+    public class Row {
+        private int row = -1;
+
+        public Row moveTo(int row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+            }
+            this.row = row;
+            return this;
+        }
+
+        public int getProductID() {
+            return productID[row];
+        }
+
+        public int getSupplierID() {
+            return supplierID[row];
+        }
+
+        public int getCategoryID() {
+            return categoryID[row];
+        }
+
+        public String getQuantityPerUnit() {
+            return quantityPerUnit[row];
+        }
+
+        public int getUnitPrice() {
+            return unitPrice[row];
+        }
+
+        public int getUnitsInStock() {
+            return unitsInStock[row];
+        }
+
+        public int getUnitsOnOrder() {
+            return unitsOnOrder[row];
+        }
+
+        public int getReorderLevel() {
+            return reorderLevel[row];
+        }
+
+        public boolean isDiscontinued() {
+            return discontinued.get(row);
+        }
+
+        public String getName() {
+            return name[row];
+        }
+    }
+
+    public ProductTable(int capacity) {
+        resize(Math.max(capacity, 16));
+    }
+
+    /*
+     * Reads a whole top-level array of products, e.g. products.json or the pages of a scan.
+     */
+    public static ProductTable read(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected a JSON array of products");
+        }
+        ProductTable table = new ProductTable(1024);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            table.add(parser);
+        }
+        return table;
+    }
+
+    /*
+     * Appends the product object at the parser's current token and returns its row.
+     * The parser is left on the object's END_OBJECT, as with ProductCodec.
+     */
+    public int add(JsonParser parser) throws IOException {
+        startObject(parser);
+        int row = append();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "productID":
+                    productID[row] = parser.getValueAsInt();
+                    break;
+                case "supplierID":
+                    supplierID[row] = parser.getValueAsInt();
+                    break;
+                case "categoryID":
+                    categoryID[row] = parser.getValueAsInt();
+                    break;
+                case "quantityPerUnit":
+                    quantityPerUnit[row] = parser.getValueAsString();
+                    break;
+                case "unitPrice":
+                    unitPrice[row] = parser.getValueAsInt();
+                    break;
+                case "unitsInStock":
+                    unitsInStock[row] = parser.getValueAsInt();
+                    break;
+                case "unitsOnOrder":
+                    unitsOnOrder[row] = parser.getValueAsInt();
+                    break;
+                case "reorderLevel":
+                    reorderLevel[row] = parser.getValueAsInt();
+                    break;
+                case "discontinued":
+                    discontinued.set(row, parser.getValueAsBoolean());
+                    break;
+                case "name":
+                    name[row] = parser.getValueAsString();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return row;
+    }
+
+    public int add(Product product) {
+        int row = append();
+        productID[row] = product.getProductID();
+        supplierID[row] = product.getSupplierID();
+        categoryID[row] = product.getCategoryID();
+        quantityPerUnit[row] = product.getQuantityPerUnit();
+        unitPrice[row] = product.getUnitPrice();
+        unitsInStock[row] = product.getUnitsInStock();
+        unitsOnOrder[row] = product.getUnitsOnOrder();
+        reorderLevel[row] = product.getReorderLevel();
+        discontinued.set(row, product.isDiscontinued());
+        name[row] = product.getName();
+        return row;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Row row() {
+        return new Row();
+    }
+
+    /*
+     * A copy of the row as a Product.
+     */
+    public Product get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return new Product(productID[row], supplierID[row], categoryID[row], quantityPerUnit[row],
+                unitPrice[row], unitsInStock[row], unitsOnOrder[row], reorderLevel[row],
+                discontinued.get(row), name[row]);
+    }
+
+    /*
+     * Releases the spare capacity once the table is complete.
+     */
+    public ProductTable trim() {
+        resize(size);
+        return this;
+    }
+
+    private int append() {
+        if (size == productID.length) {
+            resize(Math.max(16, size * 2));
+        }
+        return size++;
+    }
+
+    private void resize(int capacity) {
+        productID = productID == null ? new int[capacity] : Arrays.copyOf(productID, capacity);
+        supplierID = supplierID == null ? new int[capacity] : Arrays.copyOf(supplierID, capacity);
+        categoryID = categoryID == null ? new int[capacity] : Arrays.copyOf(categoryID, capacity);
+        unitPrice = unitPrice == null ? new int[capacity] : Arrays.copyOf(unitPrice, capacity);
+        unitsInStock = unitsInStock == null ? new int[capacity] : Arrays.copyOf(unitsInStock, capacity);
+        unitsOnOrder = unitsOnOrder == null ? new int[capacity] : Arrays.copyOf(unitsOnOrder, capacity);
+        reorderLevel = reorderLevel == null ? new int[capacity] : Arrays.copyOf(reorderLevel, capacity);
+        quantityPerUnit = quantityPerUnit == null ? new String[capacity] : Arrays.copyOf(quantityPerUnit, capacity);
+        name = name == null ? new String[capacity] : Arrays.copyOf(name, capacity);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.faunadb.client.FaunaClient;
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * The smallest slice of FaunaClient the loaders need. Production code passes
+ * client::query, anything else (an in-process stand-in, a wrapper that adds
+ * metrics or throttling) only has to turn an Expr into a future Value.
+ */
+@FunctionalInterface
+public interface QueryExecutor {
+
+    CompletableFuture<Value> query(Expr expr);
+
+    static QueryExecutor of(FaunaClient client) {
+        return client::query;
+    }
+}
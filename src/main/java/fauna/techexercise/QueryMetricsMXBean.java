@@ -0,0 +1,39 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import java.util.List;
+
+/*
+ * What MeteredQueryExecutor exposes over JMX (jconsole, VisualVM, or any JMX
+ * exporter), under fauna.techexercise:type=QueryMetrics,name=<name>.
+ */
+public interface QueryMetricsMXBean {
+
+    long getQueries();
+
+    long getErrors();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    /*
+     * One row per operation and class (or index) the queries were about.
+     */
+    List<OperationMetrics> getOperations();
+
+    void reset();
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import java.util.concurrent.TimeoutException;
+
+/*
+ * A query that was sent to FaunaDB but not answered in time. It may or may not
+ * have been executed, and may still be, so sending it again is only safe if it
+ * is idempotent (e.g. an upsert by natural key, not a plain Create).
+ */
+public class QueryOutcomeUnknownException extends TimeoutException {
+
+    public QueryOutcomeUnknownException(String message) {
+        super(message);
+    }
+}
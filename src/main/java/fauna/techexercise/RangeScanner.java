@@ -0,0 +1,274 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static com.faunadb.client.query.Language.*;
+
+/*
+ * Scans a values index in parallel by cutting it into key ranges. The index
+ * must have exactly two values, a numeric sort key and the ref, e.g.
+ *
+ *   CreateIndex({name: "products_by_product_id", source: Class("products"),
+ *                values: [{field: ["data", "productID"]}, {field: ["ref"]}]})
+ *
+ * Split keys s1 < s2 < ... < sk give the ranges (start, s1), [s1, s2), ..., [sk, end).
+ * The first and last ranges are open, so every entry is returned whatever split
+ * keys are chosen; good split keys only make the ranges evenly sized.
+ *
+ * Each range is walked by its own PageScanner (after Arr(lo), before Arr(hi))
+ * on a ForkJoinPool. Rows are handed to the consumer through bounded queues,
+ * either range after range (ordered) or as soon as any range produces them
+ * (unordered).
+ *
+ * Close the stream when done with it early. A consumer that walks away without
+ * closing it is noticed once no row has been taken for idleTimeoutMillis: the
+ * scan is then cancelled, so the range workers do not wait on the queues forever.
+ */
+public class RangeScanner {
+    private static final Logger logger = LoggerFactory.getLogger(RangeScanner.class);
+
+    private final QueryExecutor executor;
+    private final String indexName;
+    private final ForkJoinPool pool;
+    private final int pageSize;
+    private final boolean documents;
+    private long idleTimeoutMillis = 60000;
+
+    /*
+     * Marks the end of a range in its queue, and carries the error if it failed.
+     */
+    private static class End {
+        final Throwable error;
+
+        End(Throwable error) {
+            this.error = error;
+        }
+    }
+
+    /*
+     * documents = true returns the data of each indexed document (fetched in the
+     * same query as the page), false returns the raw [key, ref] index entries.
+     */
+    public RangeScanner(QueryExecutor executor, String indexName, ForkJoinPool pool, int pageSize, boolean documents) {
+        this.executor = executor;
+        this.indexName = indexName;
+        this.pool = pool;
+        this.pageSize = pageSize;
+        this.documents = documents;
+    }
+
+    /*
+     * How long a range worker waits for the consumer to take a row before it
+     * gives up on the stream and cancels the scan.
+     */
+    public RangeScanner withIdleTimeout(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    /*
+     * k - 1 split keys cutting [low, high) into k ranges of equal key width.
+     */
+    public static List<Long> evenSplits(long low, long high, int ranges) {
+        List<Long> splits = new ArrayList<>();
+        for (int i = 1; i < ranges; i++) {
+            splits.add(low + (high - low) * i / ranges);
+        }
+        return splits;
+    }
+
+    public Stream<Value> scan(List<Long> splitKeys, boolean ordered) {
+        List<Long> splits = new ArrayList<>(splitKeys);
+        Collections.sort(splits);
+        int ranges = splits.size() + 1;
+        int buffer = pageSize * 4;
+
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        List<BlockingQueue<Object>> queues = new ArrayList<>();
+        BlockingQueue<Object> shared = ordered ? null : new ArrayBlockingQueue<>(buffer * ranges);
+        for (int i = 0; i < ranges; i++) {
+            Long low = i == 0 ? null : splits.get(i - 1);
+            Long high = i == ranges - 1 ? null : splits.get(i);
+            BlockingQueue<Object> queue = ordered ? new ArrayBlockingQueue<>(buffer) : shared;
+            if (ordered) {
+                queues.add(queue);
+            }
+            pool.execute(() -> scanRange(low, high, queue, cancelled));
+        }
+        if (!ordered) {
+            queues.add(shared);
+        }
+
+        Iterator<Value> merged = new Merge(queues, ordered ? 1 : ranges, cancelled);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(merged, ordered ? Spliterator.ORDERED | Spliterator.NONNULL : Spliterator.NONNULL),
+                false).onClose(() -> cancelled.set(true));
+    }
+
+    private void scanRange(Long low, Long high, BlockingQueue<Object> queue, AtomicBoolean cancelled) {
+        Throwable error = null;
+        try {
+            PageScanner.Builder builder = PageScanner.builder(executor, Match(Index(indexName)))
+                    .withRowLambda(documents ? keyAndData() : null)
+                    .withPageSize(pageSize);
+            if (low != null) {
+                builder.startingAfter(Arr(Value(low)));
+            }
+            if (high != null) {
+                builder.endingBefore(Arr(Value(high)));
+            }
+
+            PageScanner scanner = builder.build();
+            while (!cancelled.get() && scanner.hasNext()) {
+                Value row = scanner.next();
+                // before already bounds the pages, this only guards the edge
+                if (high != null && row.at(0).to(Long.class).get() >= high) {
+                    break;
+                }
+                put(queue, documents ? row.at(1) : row, cancelled, idleTimeoutMillis);
+            }
+        } catch (Throwable t) {
+            error = t;
+        }
+
+        try {
+            put(queue, new End(error), cancelled, idleTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Expr keyAndData() {
+        return Lambda(
+                Arr(Value("key"), Value("ref")),
+                Arr(Var("key"), Select(Value("data"), Get(Var("ref"))))
+        );
+    }
+
+    /*
+     * Blocking put that lets the ForkJoinPool add a spare thread while this one
+     * waits for the consumer. It gives up once the stream has been closed, and
+     * cancels the scan when the consumer has taken nothing for idleTimeoutMillis.
+     */
+    private static void put(BlockingQueue<Object> queue,
+                            Object item,
+                            AtomicBoolean cancelled,
+                            long idleTimeoutMillis) throws InterruptedException {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            @Override
+            public boolean block() throws InterruptedException {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+                while (!cancelled.get()) {
+                    if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                    if (System.nanoTime() - deadline >= 0 && cancelled.compareAndSet(false, true)) {
+                        logger.warn("Cancelling range scan, nothing was read from it for {} ms", idleTimeoutMillis);
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return cancelled.get() || queue.offer(item);
+            }
+        });
+    }
+
+    /*
+     * Drains the queues in order; each one is finished once it has delivered the
+     * expected number of End markers. A cancelled scan delivers no more of them.
+     */
+    private static class Merge implements Iterator<Value> {
+        private final Iterator<BlockingQueue<Object>> queues;
+        private final int endsPerQueue;
+        private final AtomicBoolean cancelled;
+        private BlockingQueue<Object> current;
+        private int ends;
+        private Value next;
+
+        Merge(List<BlockingQueue<Object>> queues, int endsPerQueue, AtomicBoolean cancelled) {
+            this.queues = queues.iterator();
+            this.endsPerQueue = endsPerQueue;
+            this.cancelled = cancelled;
+            this.current = this.queues.next();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && current != null) {
+                Object item;
+                try {
+                    item = current.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for index entries", e);
+                }
+                if (item == null) {
+                    if (cancelled.get()) {
+                        throw new IllegalStateException("Range scan was cancelled");
+                    }
+                    continue;
+                }
+
+                if (item instanceof End) {
+                    Throwable error = ((End) item).error;
+                    if (error != null) {
+                        throw new IllegalStateException("Range scan failed", error);
+                    }
+                    if (++ends == endsPerQueue) {
+                        current = queues.hasNext() ? queues.next() : null;
+                        ends = 0;
+                    }
+                } else {
+                    next = (Value) item;
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Value next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Value value = next;
+            next = null;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.faunadb.client.types.Value;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/*
+ * A compact progress report for a page scan, in place of logging every row:
+ * one INFO line at most every intervalMillis with the rows and pages read so
+ * far, the current cursor and the approximate size of the data. The size is
+ * extrapolated from one row in sampleEvery, the only ones serialized, and
+ * nothing at all is serialized while INFO is off.
+ *
+ *   ScanProgress progress = new ScanProgress(logger, "products_all", scanner, 5000, 100);
+ *   scanner.forEachRemaining(progress);
+ *   progress.finish();
+ */
+public class ScanProgress implements Consumer<Value> {
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Logger logger;
+    private final String name;
+    private final PageScanner scanner;
+    private final long intervalNanos;
+    private final int sampleEvery;
+    private final long start = System.nanoTime();
+
+    private long rows = 0;
+    private long samples = 0;
+    private long sampledBytes = 0;
+    private long nextReport;
+
+    public ScanProgress(Logger logger, String name, PageScanner scanner, long intervalMillis, int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be at least 1, got " + sampleEvery);
+        }
+        this.logger = logger;
+        this.name = name;
+        this.scanner = scanner;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.sampleEvery = sampleEvery;
+        this.nextReport = start + intervalNanos;
+    }
+
+    @Override
+    public void accept(Value row) {
+        rows++;
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        if (rows % sampleEvery == 1 || sampleEvery == 1) {
+            sample(row);
+        }
+        long now = System.nanoTime();
+        if (now >= nextReport) {
+            nextReport = now + intervalNanos;
+            report("Scanning");
+        }
+    }
+
+    /*
+     * Logs the totals once the scan is done.
+     */
+    public void finish() {
+        report("Scanned");
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    private void sample(Value row) {
+        try {
+            sampledBytes += mapper.writeValueAsBytes(row).length;
+            samples++;
+        } catch (IOException e) {
+            // the estimate just gets one sample less
+        }
+    }
+
+    private void report(String what) {
+        if (!logger.isInfoEnabled()) {
+            return;
+        }
+        long bytes = samples == 0 ? 0 : sampledBytes * rows / samples;
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("{} {}: {} rows in {} pages, ~{} KB, {} ms, cursor {}",
+                what, name, rows, scanner.getPagesFetched(), bytes / 1024, millis,
+                scanner.getCursor().map(Value::toString).orElse("none"));
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.faunadb.client.query.Language.*;
+
+/******************************************************************************
+ *  A declarative description of the classes and indexes an application needs.
+ *  For example, the equivalent of
+ *
+ *  Northwind> CreateClass({ name: "products" })
+ *  Northwind> CreateIndex({name: "products_by_category_id", source: Class("products"),
+ *                          terms: [{field: ["data", "categoryID"]}]})
+ *
+ *  is
+ *
+ *  new Schema()
+ *          .withClass("products")
+ *          .withIndex(Schema.index("products_by_category_id", "products").term("data", "categoryID"));
+ *
+ *  apply() provisions the whole thing in two queries, one for the classes and
+ *  one for the indexes (an index can not be built on a class created in the
+ *  same transaction), with every CreateClass/CreateIndex guarded by
+ *  If(Exists(...)) so that applying it again is harmless. It then waits for the
+ *  indexes to become active. diff() only reports what apply() would create.
+ *****************************************************************************/
+public class Schema {
+    private static final Logger logger = LoggerFactory.getLogger(Schema.class);
+
+    public static class IndexDef {
+        private final String name;
+        private final String source;
+        private final List<List<String>> terms = new ArrayList<>();
+        private final List<Expr> values = new ArrayList<>();
+        private boolean unique = false;
+
+        private IndexDef(String name, String source) {
+            this.name = name;
+            this.source = source;
+        }
+
+        public IndexDef term(String... path) {
+            terms.add(Arrays.asList(path));
+            return this;
+        }
+
+        public IndexDef value(String... path) {
+            values.add(Obj("field", path(Arrays.asList(path))));
+            return this;
+        }
+
+        /*
+         * A value sorted in descending order, e.g. reverseValue("ts") to list the
+         * most recently changed documents first.
+         */
+        public IndexDef reverseValue(String... path) {
+            values.add(Obj("field", path(Arrays.asList(path)), "reverse", Value(true)));
+            return this;
+        }
+
+        public IndexDef unique() {
+            this.unique = true;
+            return this;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public Expr toExpr() {
+            Map<String, Expr> definition = new LinkedHashMap<>();
+            definition.put("name", Value(name));
+            definition.put("source", Class(Value(source)));
+            if (!terms.isEmpty()) {
+                List<Expr> fields = new ArrayList<>(terms.size());
+                for (List<String> term : terms) {
+                    fields.add(Obj("field", path(term)));
+                }
+                definition.put("terms", Arr(fields));
+            }
+            if (!values.isEmpty()) {
+                definition.put("values", Arr(values));
+            }
+            if (unique) {
+                definition.put("unique", Value(true));
+            }
+            return Obj(definition);
+        }
+
+        private static Expr path(List<String> path) {
+            List<Expr> segments = new ArrayList<>(path.size());
+            for (String segment : path) {
+                segments.add(Value(segment));
+            }
+            return Arr(segments);
+        }
+    }
+
+    /*
+     * What apply() created (or diff() would create) and what was already there.
+     */
+    public static class Diff {
+        private final List<String> createdClasses = new ArrayList<>();
+        private final List<String> existingClasses = new ArrayList<>();
+        private final List<String> createdIndexes = new ArrayList<>();
+        private final List<String> existingIndexes = new ArrayList<>();
+
+        public List<String> getCreatedClasses() {
+            return Collections.unmodifiableList(createdClasses);
+        }
+
+        public List<String> getExistingClasses() {
+            return Collections.unmodifiableList(existingClasses);
+        }
+
+        public List<String> getCreatedIndexes() {
+            return Collections.unmodifiableList(createdIndexes);
+        }
+
+        public List<String> getExistingIndexes() {
+            return Collections.unmodifiableList(existingIndexes);
+        }
+
+        public boolean isEmpty() {
+            return createdClasses.isEmpty() && createdIndexes.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "classes created " + createdClasses + ", existing " + existingClasses
+                    + "; indexes created " + createdIndexes + ", existing " + existingIndexes;
+        }
+    }
+
+    private final List<String> classes = new ArrayList<>();
+    private final Map<String, IndexDef> indexes = new LinkedHashMap<>();
+
+    public static IndexDef index(String name, String source) {
+        return new IndexDef(name, source);
+    }
+
+    /*
+     * The class plus its <class>_all index, as the loaders create them.
+     */
+    public Schema withClassAndAllIndex(String className) {
+        return withClass(className).withIndex(index(className + "_all", className));
+    }
+
+    public Schema withClass(String className) {
+        if (!classes.contains(className)) {
+            classes.add(className);
+        }
+        return this;
+    }
+
+    /*
+     * Like classes, indexes are keyed by name: adding one whose name is already
+     * in the schema (e.g. a lookup index two callers both need) keeps the first.
+     */
+    public Schema withIndex(IndexDef index) {
+        withClass(index.getSource());
+        indexes.putIfAbsent(index.getName(), index);
+        return this;
+    }
+
+    public List<String> getClasses() {
+        return Collections.unmodifiableList(classes);
+    }
+
+    public List<String> getIndexNames() {
+        return new ArrayList<>(indexes.keySet());
+    }
+
+    /*
+     * Compares the schema with the database in a single query, without changing anything.
+     */
+    public Diff diff(QueryExecutor executor) {
+        List<Expr> checks = new ArrayList<>();
+        for (String className : classes) {
+            checks.add(Exists(Class(Value(className))));
+        }
+        for (String name : indexes.keySet()) {
+            checks.add(Exists(Index(Value(name))));
+        }
+
+        List<Value> exists = new ArrayList<>(executor.query(Arr(checks)).join().asCollectionOf(Value.class).get());
+        Diff diff = new Diff();
+        for (int i = 0; i < classes.size(); i++) {
+            (exists.get(i).to(Boolean.class).get() ? diff.existingClasses : diff.createdClasses).add(classes.get(i));
+        }
+        List<String> names = getIndexNames();
+        for (int i = 0; i < names.size(); i++) {
+            (exists.get(classes.size() + i).to(Boolean.class).get() ? diff.existingIndexes : diff.createdIndexes).add(names.get(i));
+        }
+        return diff;
+    }
+
+    public Diff apply(QueryExecutor executor, long indexTimeoutMillis) throws Exception {
+        Diff diff = new Diff();
+
+        List<Expr> createClasses = new ArrayList<>(classes.size());
+        for (String className : classes) {
+            createClasses.add(
+                    If(
+                            Exists(Class(Value(className))),
+                            Value(false),
+                            Do(CreateClass(Obj("name", Value(className))), Value(true))
+                    )
+            );
+        }
+        List<Boolean> created = createdFlags(executor.query(Arr(createClasses)));
+        for (int i = 0; i < classes.size(); i++) {
+            (created.get(i) ? diff.createdClasses : diff.existingClasses).add(classes.get(i));
+        }
+
+        if (!indexes.isEmpty()) {
+            List<Expr> createIndexes = new ArrayList<>(indexes.size());
+            for (IndexDef index : indexes.values()) {
+                createIndexes.add(
+                        If(
+                                Exists(Index(Value(index.getName()))),
+                                Value(false),
+                                Do(CreateIndex(index.toExpr()), Value(true))
+                        )
+                );
+            }
+            created = createdFlags(executor.query(Arr(createIndexes)));
+            List<String> names = getIndexNames();
+            for (int i = 0; i < names.size(); i++) {
+                (created.get(i) ? diff.createdIndexes : diff.existingIndexes).add(names.get(i));
+            }
+
+            new IndexWatcher(executor).awaitActive(getIndexNames(), indexTimeoutMillis).join();
+        }
+
+        logger.info("Applied schema: {}", diff);
+        return diff;
+    }
+
+    private static List<Boolean> createdFlags(CompletableFuture<Value> result) {
+        List<Boolean> flags = new ArrayList<>();
+        for (Value flag : result.join().asCollectionOf(Value.class).get()) {
+            flags.add(flag.to(Boolean.class).get());
+        }
+        return flags;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class AdaptiveLimitTest {
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void growsByOnePerQueryInSlowStart() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit(4, 1, 64);
+        acquire(limit, 4);
+        for (int i = 0; i < 4; i++) {
+            limit.record(MILLIS, false);
+        }
+        assertEquals(8, limit.getLimit());
+    }
+
+    @Test
+    public void halvesOnceWhenThrottledThenGrowsAdditively() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit(16, 1, 64);
+        limit.record(1000 * MILLIS, true);
+        assertEquals(8, limit.getLimit());
+
+        // the same burst of throttling within one round trip only counts once
+        limit.record(1000 * MILLIS, true);
+        assertEquals(8, limit.getLimit());
+
+        // out of slow start, so about one more per limit queries
+        acquire(limit, 8);
+        for (int i = 0; i < 8; i++) {
+            limit.record(MILLIS, false);
+        }
+        assertEquals(8, limit.getLimit());
+        limit.record(MILLIS, false);
+        assertEquals(9, limit.getLimit());
+    }
+
+    @Test
+    public void staysWithinItsBounds() throws InterruptedException {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 2, 3);
+        limit.record(MILLIS, true);
+        assertEquals(2, limit.getLimit());
+
+        acquire(limit, 2);
+        for (int i = 0; i < 10; i++) {
+            limit.record(MILLIS, false);
+        }
+        assertEquals(3, limit.getLimit());
+    }
+
+    @Test
+    public void acquireWaitsForASlot() throws Exception {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 1, 2);
+        acquire(limit, 2);
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(third.isDone());
+
+        limit.release();
+        third.get(1, TimeUnit.SECONDS);
+        assertEquals(2, limit.getInFlight());
+    }
+
+    private static void acquire(AdaptiveLimit limit, int slots) throws InterruptedException {
+        for (int i = 0; i < slots; i++) {
+            limit.acquire();
+        }
+    }
+}
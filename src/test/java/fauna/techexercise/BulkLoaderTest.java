@@ -0,0 +1,179 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value.NullV;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.faunadb.client.query.Language.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * BulkLoader against a FakeExecutor standing in for FaunaDB.
+ */
+public class BulkLoaderTest {
+
+    @Test
+    public void neverHasMoreThanMaxInFlightQueriesOutstanding() throws InterruptedException {
+        FakeExecutor fauna = new FakeExecutor(query -> FakeExecutor.later(NullV.NULL, 2));
+        BulkLoader loader = new BulkLoader(fauna, 8);
+
+        LoadReport report = loader.load("products", records(300).iterator());
+
+        assertEquals(300, report.getLoaded());
+        assertEquals(300, fauna.queries.size());
+        assertTrue("Saw " + fauna.getMaxInFlight() + " queries in flight", fauna.getMaxInFlight() <= 8);
+        assertEquals(0, loader.getWindow().getInFlight());
+    }
+
+    @Test
+    public void bisectsARejectedBatchDownToTheOffendingRecord() throws InterruptedException {
+        FakeExecutor fauna = new FakeExecutor(query -> FakeExecutor.values(query, "id").contains(13L)
+                ? FakeExecutor.failed(new RuntimeException("413: request too large"))
+                : FakeExecutor.later(NullV.NULL, 1));
+        BulkLoader loader = new BulkLoader(fauna, 4, 8, BulkLoader.DEFAULT_MAX_BATCH_BYTES);
+
+        LoadReport report = loader.load("orders", records(20).iterator());
+
+        assertEquals(19, report.getLoaded());
+        assertEquals(1, report.getFailures().size());
+        assertEquals(13, report.getFailures().get(0).getRecordIndex());
+
+        /*
+         * 0..7, 8..15 (rejected) and 16..19, then the halves one after the other:
+         * 8..11, 12..15 (rejected), 12..13 (rejected), 12, 13 (rejected) and 14..15.
+         */
+        List<List<Long>> sent = new ArrayList<>();
+        for (JsonNode query : fauna.queries) {
+            sent.add(FakeExecutor.values(query, "id"));
+        }
+        assertTrue(sent.contains(Arrays.asList(13L)));
+        assertEquals(3 + 6, sent.size());
+    }
+
+    @Test
+    public void sendsPlainCreatesUnlessUpserting() throws InterruptedException {
+        FakeExecutor fauna = new FakeExecutor(query -> FakeExecutor.later(NullV.NULL, 1));
+        new BulkLoader(fauna, 4, 4, BulkLoader.DEFAULT_MAX_BATCH_BYTES)
+                .load("products", records(4).iterator());
+
+        String query = fauna.queries.get(0).toString();
+        assertTrue(query, query.contains("\"foreach\""));
+        assertTrue(query, query.contains("\"create\""));
+        assertFalse(query, query.contains("\"if\""));
+    }
+
+    @Test
+    public void sendsUpsertsOnTheNaturalKeyWhenConfigured() throws InterruptedException {
+        FakeExecutor fauna = new FakeExecutor(query -> FakeExecutor.later(NullV.NULL, 1));
+        new BulkLoader(fauna, 4, 4, BulkLoader.DEFAULT_MAX_BATCH_BYTES)
+                .upsertBy("product_lookup_by_product_id", "id")
+                .load("products", records(4).iterator());
+
+        assertEquals(1, fauna.queries.size());
+        String query = fauna.queries.get(0).toString();
+        assertTrue(query, query.contains("\"foreach\""));
+        assertTrue(query, query.contains("\"if\""));
+        assertTrue(query, query.contains("\"exists\""));
+        assertTrue(query, query.contains("{\"index\":\"product_lookup_by_product_id\"}"));
+        assertTrue(query, query.contains("\"select\":\"id\""));
+        assertTrue(query, query.contains("\"replace\""));
+        assertTrue(query, query.contains("\"create\""));
+        assertEquals(Arrays.asList(0L, 1L, 2L, 3L), FakeExecutor.values(fauna.queries.get(0), "id"));
+    }
+
+    @Test
+    public void upsertsByTheNaturalKeyGivenToEachLoad() throws InterruptedException {
+        FakeExecutor fauna = new FakeExecutor(query -> FakeExecutor.later(NullV.NULL, 1));
+        BulkLoader loader = new BulkLoader(fauna, 4, 4, BulkLoader.DEFAULT_MAX_BATCH_BYTES);
+        loader.load("products", records(4).iterator(), null, new NaturalKey("products", "product_by_id", "id"));
+        loader.load("shippers", records(4).iterator(), null, null);
+
+        assertEquals(2, fauna.queries.size());
+        String upserts = fauna.queries.get(0).toString();
+        assertTrue(upserts, upserts.contains("{\"index\":\"product_by_id\"}"));
+        assertTrue(upserts, upserts.contains("{\"class\":\"products\"}"));
+        // the key of one load does not stick to the loader
+        String creates = fauna.queries.get(1).toString();
+        assertFalse(creates, creates.contains("\"if\""));
+        assertTrue(creates, creates.contains("{\"class\":\"shippers\"}"));
+    }
+
+    @Test
+    public void doesNotResendACreateWhoseOutcomeIsUnknown() throws InterruptedException {
+        AtomicInteger written = new AtomicInteger();
+        FakeExecutor fauna = new FakeExecutor(query -> {
+            // the batch is committed, but the answer never makes it back in time
+            written.addAndGet(FakeExecutor.values(query, "id").size());
+            return FakeExecutor.failed(new QueryOutcomeUnknownException("no answer within 10 ms"));
+        });
+        LoadReport report = new BulkLoader(fauna, 4, 4, BulkLoader.DEFAULT_MAX_BATCH_BYTES)
+                .load("orders", records(4).iterator());
+
+        assertEquals(1, fauna.queries.size());
+        assertEquals(4, written.get());
+        assertEquals(0, report.getLoaded());
+        assertEquals(4, report.getFailures().size());
+        assertTrue(report.getFailures().get(0).getCause() instanceof QueryOutcomeUnknownException);
+    }
+
+    @Test
+    public void resendsAnUpsertWhoseOutcomeIsUnknown() throws InterruptedException {
+        AtomicInteger attempts = new AtomicInteger();
+        FakeExecutor fauna = new FakeExecutor(query -> attempts.incrementAndGet() == 1
+                ? FakeExecutor.failed(new QueryOutcomeUnknownException("no answer within 10 ms"))
+                : FakeExecutor.later(NullV.NULL, 1));
+        LoadReport report = new BulkLoader(fauna, 4, 4, BulkLoader.DEFAULT_MAX_BATCH_BYTES)
+                .upsertBy("order_lookup_by_order_id", "id")
+                .load("orders", records(4).iterator());
+
+        assertEquals(2, fauna.queries.size());
+        assertEquals(4, report.getLoaded());
+        assertTrue(report.getFailures().isEmpty());
+    }
+
+    @Test
+    public void retriesAmbiguousFailuresOnlyWhenIdempotent() {
+        for (Throwable ambiguous : Arrays.asList(new TimeoutException(), new IOException("connection reset"))) {
+            assertFalse(ambiguous.toString(), BulkLoader.isTransient(ambiguous, false));
+            assertTrue(ambiguous.toString(), BulkLoader.isTransient(ambiguous, true));
+        }
+        assertFalse(BulkLoader.isTransient(new RuntimeException("413: request too large"), true));
+    }
+
+    /*
+     * Records {"id": 0}, {"id": 1}, ... so that the id of a record is its index.
+     */
+    static List<Expr> records(int count) {
+        List<Expr> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(Obj("id", Value(i)));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import com.faunadb.client.types.Value;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*
+ * EntityRepository and its EntityCache against an in-process fake of FaunaDB:
+ * a QueryExecutor that keeps every query as the JSON it would be sent as and
+ * whose answers the test completes itself, so it controls exactly when a load
+ * finishes. Answers are documents as the driver decodes them off the wire.
+ */
+public class EntityRepositoryTest {
+    private final List<JsonNode> queries = new ArrayList<>();
+    private final List<CompletableFuture<Value>> pending = new ArrayList<>();
+    private final QueryExecutor fake = expr -> {
+        queries.add(FakeExecutor.mapper.valueToTree(expr));
+        CompletableFuture<Value> response = new CompletableFuture<>();
+        pending.add(response);
+        return response;
+    };
+
+    @Test
+    public void looksTheDocumentUpByItsNaturalKeyAndDecodesIt() {
+        EntityRepository<Integer, Product> products = EntityRepository.products(fake, 10, 0);
+
+        CompletableFuture<Product> lookup = products.get(7);
+        assertEquals(1, queries());
+        JsonNode get = queries.get(0).get("get");
+        assertEquals("{\"index\":\"product_lookup_by_product_id\"}", get.get("match").toString());
+        assertEquals(7, get.get("terms").asInt());
+
+        pending.get(0).complete(document(7));
+        Product product = lookup.join();
+        assertEquals(7, product.getProductID());
+        assertEquals(3, product.getSupplierID());
+        assertEquals(2, product.getCategoryID());
+        assertEquals("12 - 550 ml bottles", product.getQuantityPerUnit());
+        assertEquals(30, product.getUnitPrice());
+        assertEquals(15, product.getUnitsInStock());
+        assertEquals(0, product.getUnitsOnOrder());
+        assertEquals(10, product.getReorderLevel());
+        assertTrue(product.isDiscontinued());
+        assertEquals("Product 7", product.getName());
+
+        EntityCache.Entry<Product> entry = products.getCache().getEntry(7);
+        assertEquals(document(7).at("ref"), entry.getRef());
+        assertEquals(1_530_000_000_000_007L, entry.getTs());
+        assertEquals(Integer.valueOf(7), products.getCache().keyFor(document(7).at("ref")));
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        EntityRepository<Integer, Product> products = EntityRepository.products(fake, 10, 0);
+
+        assertEquals(1, load(products, 1).getProductID());
+        assertEquals(1, load(products, 1).getProductID());
+        assertEquals(2, load(products, 2).getProductID());
+
+        EntityCache<Integer, Product> cache = products.getCache();
+        assertEquals(2, queries());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void coalescesConcurrentMissesIntoOneQuery() {
+        EntityRepository<Integer, Product> products = EntityRepository.products(fake, 10, 0);
+
+        CompletableFuture<Product> first = products.get(7);
+        CompletableFuture<Product> second = products.get(7);
+        assertFalse(first.isDone());
+        assertEquals(1, queries());
+        assertLookup(0, 7);
+
+        pending.get(0).complete(document(7));
+        assertEquals(7, first.join().getProductID());
+        assertEquals(7, second.join().getProductID());
+
+        EntityCache<Integer, Product> cache = products.getCache();
+        assertEquals(1, queries());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getCoalesced());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntryAtMaxSize() {
+        EntityRepository<Integer, Product> products = EntityRepository.products(fake, 2, 0);
+        EntityCache<Integer, Product> cache = products.getCache();
+
+        load(products, 1);
+        load(products, 2);
+        load(products, 1);
+        load(products, 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.getEntry(1));
+        assertNull(cache.getEntry(2));
+        assertNotNull(cache.getEntry(3));
+        assertNull(cache.keyFor(document(2).at("ref")));
+
+        load(products, 2);
+        assertEquals(4, queries());
+    }
+
+    @Test
+    public void reloadsEntriesOlderThanTheTtl() throws InterruptedException {
+        EntityRepository<Integer, Product> products = EntityRepository.products(fake, 10, 50);
+        EntityCache<Integer, Product> cache = products.getCache();
+
+        load(products, 1);
+        load(products, 1);
+        assertEquals(1, queries());
+
+        Thread.sleep(100);
+        load(products, 1);
+
+        assertEquals(2, queries());
+        assertEquals(1, cache.getExpirations());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void doesNotCacheAFailedLoad() {
+        EntityRepository<Integer, Product> products = EntityRepository.products(fake, 10, 0);
+        EntityCache<Integer, Product> cache = products.getCache();
+
+        CompletableFuture<Product> failed = products.get(1);
+        CompletableFuture<Product> waiting = products.get(1);
+        IllegalStateException error = new IllegalStateException("unavailable");
+        pending.get(0).completeExceptionally(error);
+
+        assertFailedWith(error, failed);
+        assertFailedWith(error, waiting);
+        assertEquals(0, cache.size());
+
+        // the failed load is no longer in progress, so the next miss queries again
+        CompletableFuture<Product> retry = products.get(1);
+        assertEquals(2, queries());
+        assertLookup(1, 1);
+        pending.get(1).complete(document(1));
+        assertEquals(1, retry.join().getProductID());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getCoalesced());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void doesNotCacheALoadInvalidatedWhileInFlight() {
+        EntityRepository<Integer, Product> products = EntityRepository.products(fake, 10, 0);
+        EntityCache<Integer, Product> cache = products.getCache();
+
+        CompletableFuture<Product> stale = products.get(1);
+        // the document changes after the load has read it, before its answer is in
+        assertFalse(cache.invalidate(1));
+        pending.get(0).complete(document(1));
+
+        assertEquals(1, stale.join().getProductID());
+        assertEquals(0, cache.size());
+        assertNull(cache.keyFor(document(1).at("ref")));
+
+        // so the next lookup reads it again, and that one is cached
+        assertEquals(1, load(products, 1).getProductID());
+        assertEquals(2, queries());
+        assertEquals(1, cache.size());
+        load(products, 1);
+        assertEquals(2, queries());
+    }
+
+    private int queries() {
+        return pending.size();
+    }
+
+    /*
+     * Checks the query is the Get(Match(Index(...), productID)) of the lookup.
+     */
+    private void assertLookup(int query, int productID) {
+        JsonNode get = queries.get(query).get("get");
+        assertEquals("{\"index\":\"product_lookup_by_product_id\"}", get.get("match").toString());
+        assertEquals(productID, get.get("terms").asInt());
+    }
+
+    /*
+     * Gets the product, answering the query if the lookup needed one.
+     */
+    private Product load(EntityRepository<Integer, Product> products, int productID) {
+        int before = pending.size();
+        CompletableFuture<Product> product = products.get(productID);
+        if (pending.size() > before) {
+            assertLookup(before, productID);
+            pending.get(before).complete(document(productID));
+        }
+        return product.join();
+    }
+
+    private static void assertFailedWith(Throwable expected, CompletableFuture<?> future) {
+        try {
+            future.join();
+            fail("Expected " + expected);
+        } catch (CompletionException e) {
+            assertSame(expected, BulkLoader.unwrap(e));
+        }
+    }
+
+    /*
+     * A products document as Get returns it, decoded from the JSON FaunaDB
+     * sends the same way the driver does.
+     */
+    private static Value document(int productID) {
+        String json = "{\"ref\": {\"@ref\": {\"id\": \"" + productID + "\", \"class\": {\"@ref\": {\"id\": \"products\","
+                + " \"class\": {\"@ref\": {\"id\": \"classes\"}}}}}},"
+                + " \"ts\": " + (1_530_000_000_000_000L + productID) + ","
+                + " \"data\": {\"productID\": " + productID + ", \"supplierID\": 3, \"categoryID\": 2,"
+                + " \"quantityPerUnit\": \"12 - 550 ml bottles\", \"unitPrice\": 30, \"unitsInStock\": 15,"
+                + " \"unitsOnOrder\": 0, \"reorderLevel\": 10, \"discontinued\": true,"
+                + " \"name\": \"Product " + productID + "\"}}";
+        try {
+            return FakeExecutor.mapper.readValue(json, Value.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * An in-process stand-in for FaunaDB. Every query is kept as the JSON it would
+ * be sent as, and answered by the test's Handler; the number of queries
+ * outstanding at once is tracked.
+ */
+class FakeExecutor implements QueryExecutor {
+    static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "fake-fauna");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @FunctionalInterface
+    interface Handler {
+        CompletableFuture<Value> answer(JsonNode query);
+    }
+
+    final List<JsonNode> queries = Collections.synchronizedList(new ArrayList<>());
+    private final Handler handler;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    FakeExecutor(Handler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public CompletableFuture<Value> query(Expr expr) {
+        JsonNode json = mapper.valueToTree(expr);
+        queries.add(json);
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        return handler.answer(json).whenComplete((value, error) -> inFlight.decrementAndGet());
+    }
+
+    int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    /*
+     * Completes with value after delayMillis, on another thread like a real response.
+     */
+    static CompletableFuture<Value> later(Value value, long delayMillis) {
+        CompletableFuture<Value> response = new CompletableFuture<>();
+        scheduler.schedule(() -> response.complete(value), delayMillis, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    static CompletableFuture<Value> failed(Throwable error) {
+        CompletableFuture<Value> response = new CompletableFuture<>();
+        response.completeExceptionally(error);
+        return response;
+    }
+
+    /*
+     * The values of an integer field of every record in the query, in order.
+     */
+    static List<Long> values(JsonNode query, String field) {
+        List<Long> values = new ArrayList<>();
+        Matcher matcher = Pattern.compile("\"" + Pattern.quote(field) + "\":(-?\\d+)").matcher(query.toString());
+        while (matcher.find()) {
+            values.add(Long.parseLong(matcher.group(1)));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/*
+ * Streams a generated orders.json and checks that what stays live on the heap
+ * is the reader and one order, not what has been read so far.
+ *
+ * By default the file is 32 MB. The multi-GB run, a file many times bigger than
+ * the -Xmx64m heap surefire forks the tests with, is opt-in as it takes a while
+ * and as much disk: mvn test -Plarge-files (or -Dorders.bytes=...). Reading that
+ * file with readTree, or any reader that keeps what it has read, fails with an
+ * OutOfMemoryError. It is skipped in a JVM with a bigger heap, e.g. in an IDE.
+ */
+public class JsonArrayReaderTest {
+    private static final long MAX_HEAP_BYTES = 128L * 1024 * 1024;
+    private static final long MAX_LIVE_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_BYTES = 32L * 1024 * 1024;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("orders", ".json");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void keepsOnlyTheCurrentElementLive() throws IOException {
+        stream(DEFAULT_BYTES);
+    }
+
+    @Test
+    public void streamsAFileMuchBiggerThanTheHeap() throws IOException {
+        Long bytes = Long.getLong("orders.bytes");
+        assumeTrue("Opt-in, run with -Plarge-files or -Dorders.bytes=...", bytes != null);
+        assumeTrue("Needs a small heap, see the surefire argLine", Runtime.getRuntime().maxMemory() <= MAX_HEAP_BYTES);
+
+        stream(bytes);
+    }
+
+    private void stream(long bytes) throws IOException {
+        long orders = writeOrders(file, bytes);
+        long sampleEvery = Math.max(1, orders / 20);
+        assertTrue(file.length() >= bytes);
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long maxUsed = 0;
+        long read = 0;
+        try (JsonArrayReader<JsonNode> reader = JsonArrayReader.open(mapper.readerFor(JsonNode.class), file)) {
+            while (reader.hasNext()) {
+                JsonNode order = reader.next();
+                assertEquals(read + 1, order.get("orderID").asLong());
+                assertEquals(3, order.get("details").size());
+                read++;
+
+                if (read % sampleEvery == 0) {
+                    System.gc();
+                    maxUsed = Math.max(maxUsed, memory.getHeapMemoryUsage().getUsed());
+                }
+            }
+        }
+
+        assertEquals(orders, read);
+        // what is live after a collection is the reader and one order, nowhere near the file
+        assertTrue("Heap grew to " + maxUsed + " bytes", maxUsed < MAX_LIVE_BYTES);
+    }
+
+    @Test
+    public void skipsElementsWithoutBindingThem() throws IOException {
+        Files.write(file.toPath(), "[{\"orderID\": 1}, {\"orderID\": 2, \"details\": [{}]}, {\"orderID\": 3}]"
+                .getBytes(StandardCharsets.UTF_8));
+
+        try (JsonArrayReader<JsonNode> reader = JsonArrayReader.open(mapper.readerFor(JsonNode.class), file)) {
+            reader.skip();
+            reader.skip();
+            assertEquals(3, reader.next().get("orderID").asInt());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    /*
+     * Orders shaped like northwinds-json/orders.json until the file has at least bytes bytes.
+     */
+    private static long writeOrders(File file, long bytes) throws IOException {
+        long orders = 0;
+        long written = 0;
+        try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write('[');
+            do {
+                String order = (orders > 0 ? ",\n" : "\n") + order(orders + 1);
+                out.write(order);
+                written += order.length();
+                orders++;
+            } while (written < bytes);
+            out.write("\n]\n");
+        }
+        return orders;
+    }
+
+    private static String order(long orderID) {
+        return "{\"orderID\": " + orderID + ", \"customerID\": \"VINET\", \"employeeID\": 5,"
+                + " \"orderDate\": \"1996-07-04 00:00:00.000\", \"shipVia\": 3, \"freight\": 32.38,"
+                + " \"shipName\": \"Vins et alcools Chevalier\", \"shipAddress\": {\"street\": \"59 rue de l'Abbaye\","
+                + " \"city\": \"Reims\", \"region\": \"NULL\", \"postalCode\": 51100, \"country\": \"France\"},"
+                + " \"details\": [{\"productID\": 11, \"unitPrice\": 14, \"quantity\": 12, \"discount\": 0},"
+                + " {\"productID\": 42, \"unitPrice\": 9.8, \"quantity\": 10, \"discount\": 0},"
+                + " {\"productID\": 72, \"unitPrice\": 34.8, \"quantity\": 5, \"discount\": 0.15}]}";
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoadCheckpointTest {
+    private static final String TARGET = "http://localhost:8443#0123456789abcdef";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private File source;
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.getRoot(), "products.checkpoint");
+        source = folder.newFile("products.json");
+        Files.write(source.toPath(), "[{}, {}, {}]".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void resumesTheSameLoad() throws IOException {
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(file, "products", source, TARGET, 0);
+        checkpoint.acknowledge(1, 2);
+        checkpoint.acknowledge(0, 1);
+        checkpoint.save(true);
+
+        LoadCheckpoint resumed = LoadCheckpoint.open(file, "products", source, TARGET, 0);
+        assertEquals(2, resumed.getRecords());
+        assertTrue(resumed.isComplete());
+    }
+
+    @Test
+    public void ignoresACheckpointForAnotherDatabase() throws IOException {
+        LoadCheckpoint.open(file, "products", source, TARGET, 0).save(true);
+
+        LoadCheckpoint other = LoadCheckpoint.open(file, "products", source, "https://db.fauna.com#fedcba9876543210", 0);
+        assertEquals(0, other.getRecords());
+        assertFalse(other.isComplete());
+    }
+
+    @Test
+    public void ignoresACheckpointForAChangedSource() throws IOException {
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(file, "products", source, TARGET, 0);
+        checkpoint.acknowledge(0, 2);
+        checkpoint.save(false);
+
+        Files.write(source.toPath(), "[{}, {}, {}, {}]".getBytes(StandardCharsets.UTF_8));
+        LoadCheckpoint changed = LoadCheckpoint.open(file, "products", source, TARGET, 0);
+        assertEquals(0, changed.getRecords());
+    }
+
+    @Test
+    public void ignoresACheckpointForAnotherFile() throws IOException {
+        LoadCheckpoint.open(file, "products", source, TARGET, 0).save(true);
+
+        File copy = folder.newFile("copy.json");
+        Files.copy(source.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertFalse(LoadCheckpoint.open(file, "products", copy, TARGET, 0).isComplete());
+    }
+}
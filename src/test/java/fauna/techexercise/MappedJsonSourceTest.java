@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*
+ * MappedJsonSource.split on small files: whatever the number of parts, the
+ * slices put back together must be exactly the elements of the whole array.
+ */
+public class MappedJsonSourceTest {
+    /*
+     * Elements with every character the cut finder has to see through: brackets,
+     * braces and commas inside strings, escaped quotes, an escaped backslash just
+     * before a closing quote, and nesting.
+     */
+    private static final String TRICKY = "[\n"
+            + "  {\"id\": 1, \"name\": \"commas, inside, strings\"},\n"
+            + "  {\"id\": 2, \"name\": \"brackets ] [ and braces } {\"},\n"
+            + "  {\"id\": 3, \"name\": \"a \\\"quoted\\\" word, ]\"},\n"
+            + "  {\"id\": 4, \"name\": \"ends in a backslash \\\\\", \"next\": \"], {\"},\n"
+            + "  {\"id\": 5, \"name\": \"\\\\\\\"\", \"tags\": [\"x,y\", \"}\", []]},\n"
+            + "  [6, \"an array element\", {\"nested\": [1, 2, {\"deeper\": \"]\"}]}],\n"
+            + "  \"a plain string, with a comma\",\n"
+            + "  8,\n"
+            + "  {\"id\": 9, \"unicode\": \"caf\\u00e9 \\\\u005d\"},\n"
+            + "  {\"id\": 10}\n"
+            + "]\n";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("northwind", ".json");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void slicesPutBackTogetherAreTheWholeArray() throws IOException {
+        write(TRICKY);
+        assertRoundTrips(10);
+    }
+
+    @Test
+    public void slicesALargerFileEvenly() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            json.append(i == 0 ? "\n" : ",\n")
+                    .append("{\"id\": ").append(i).append(", \"name\": \"product, ").append(i).append(" [\\\"]\"}");
+        }
+        write(json.append("\n]").toString());
+        assertRoundTrips(200);
+
+        try (MappedJsonSource source = MappedJsonSource.open(file)) {
+            List<MappedJsonSource.Slice> slices = source.split(4);
+            assertEquals(4, slices.size());
+            for (MappedJsonSource.Slice slice : slices) {
+                assertTrue(slice + " is far from a quarter", Math.abs(slice.length() - source.size() / 4) < source.size() / 10);
+            }
+        }
+    }
+
+    @Test
+    public void splitsAnEmptyArrayIntoOneEmptySlice() throws IOException {
+        for (String empty : new String[]{"[]", " [ \n ] \n"}) {
+            write(empty);
+            try (MappedJsonSource source = MappedJsonSource.open(file)) {
+                for (int parts = 1; parts <= 8; parts++) {
+                    List<MappedJsonSource.Slice> slices = source.split(parts);
+                    assertEquals(1, slices.size());
+                    assertEquals(0, elements(slices.get(0)).size());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void returnsNoMoreSlicesThanElements() throws IOException {
+        write("[{\"id\": 1}, {\"id\": 2, \"name\": \"x, y\"}]");
+        try (MappedJsonSource source = MappedJsonSource.open(file)) {
+            for (int parts = 3; parts <= 8; parts++) {
+                List<MappedJsonSource.Slice> slices = source.split(parts);
+                assertTrue(slices.size() + " slices", slices.size() <= 2);
+                for (MappedJsonSource.Slice slice : slices) {
+                    assertTrue(slice + " is empty", elements(slice).size() > 0);
+                }
+            }
+        }
+        assertRoundTrips(2);
+    }
+
+    @Test
+    public void rejectsAnythingButAnArray() throws IOException {
+        for (String json : new String[]{"{\"id\": 1}", "x[1, 2]", "[1, 2", "[{\"name\": \"]\"}"}) {
+            write(json);
+            try (MappedJsonSource source = MappedJsonSource.open(file)) {
+                source.split(2);
+                fail("Split " + json);
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    /*
+     * For 1 to 8 parts: the slices are contiguous, and their elements, in order,
+     * are those of the whole file.
+     */
+    private void assertRoundTrips(int elements) throws IOException {
+        List<JsonNode> whole = new ArrayList<>();
+        mapper.readTree(file).forEach(whole::add);
+        assertEquals(elements, whole.size());
+
+        try (MappedJsonSource source = MappedJsonSource.open(file)) {
+            for (int parts = 1; parts <= 8; parts++) {
+                List<MappedJsonSource.Slice> slices = source.split(parts);
+                assertTrue(slices.size() + " slices for " + parts, slices.size() >= 1 && slices.size() <= parts);
+
+                List<JsonNode> joined = new ArrayList<>();
+                for (int i = 0; i < slices.size(); i++) {
+                    if (i > 0) {
+                        // only the comma between two elements is left out
+                        assertEquals(slices.get(i - 1).getEnd() + 1, slices.get(i).getStart());
+                    }
+                    joined.addAll(elements(slices.get(i)));
+                }
+                assertEquals(parts + " parts", whole, joined);
+            }
+        }
+    }
+
+    private List<JsonNode> elements(MappedJsonSource.Slice slice) throws IOException {
+        List<JsonNode> elements = new ArrayList<>();
+        try (InputStream in = slice.open()) {
+            mapper.readTree(in).forEach(elements::add);
+        }
+        return elements;
+    }
+
+    private void write(String json) throws IOException {
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import com.faunadb.client.query.Expr;
+import com.faunadb.client.types.Value.NullV;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.faunadb.client.query.Language.*;
+import static org.junit.Assert.assertEquals;
+
+public class MeteredQueryExecutorTest {
+    private final FakeExecutor fauna = new FakeExecutor(query -> FakeExecutor.later(NullV.NULL, 1));
+
+    @Test
+    public void countsABatchUnderItsOperationAndClass() {
+        MeteredQueryExecutor metered = new MeteredQueryExecutor(fauna);
+        metered.query(batch()).join();
+
+        List<OperationMetrics> operations = metered.getOperations();
+        assertEquals(1, operations.size());
+        assertEquals("foreach", operations.get(0).getOperation());
+        assertEquals("products", operations.get(0).getTarget());
+        assertEquals(1, operations.get(0).getQueries());
+        // sizes are only measured on request
+        assertEquals(0, metered.getBytesSent());
+    }
+
+    @Test
+    public void fallsBackToTheIndexWithoutAClass() {
+        MeteredQueryExecutor metered = new MeteredQueryExecutor(fauna);
+        metered.query(Paginate(Match(Index(Value("products_by_ts"))))).join();
+
+        OperationMetrics operation = metered.getOperations().get(0);
+        assertEquals("paginate", operation.getOperation());
+        assertEquals("products_by_ts", operation.getTarget());
+    }
+
+    @Test
+    public void measuresTheWholeQueryWhenAsked() throws JsonProcessingException {
+        MeteredQueryExecutor metered = new MeteredQueryExecutor(fauna, true);
+        Expr batch = batch();
+        metered.query(batch).join();
+
+        assertEquals("products", metered.getOperations().get(0).getTarget());
+        assertEquals(FakeExecutor.mapper.writeValueAsBytes(batch).length, metered.getBytesSent());
+    }
+
+    private static Expr batch() {
+        return Foreach(
+                Arr(BulkLoaderTest.records(100)),
+                Lambda(Value("x"), Create(Class(Value("products")), Obj("data", Var("x")))));
+    }
+}
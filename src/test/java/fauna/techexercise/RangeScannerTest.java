@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import com.faunadb.client.types.Value;
+import com.faunadb.client.types.Value.ArrayV;
+import com.faunadb.client.types.Value.LongV;
+import com.faunadb.client.types.Value.ObjectV;
+import com.faunadb.client.types.Value.StringV;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * RangeScanner against an in-process fake of a values index with a numeric
+ * key, [key, ref] entries.
+ */
+public class RangeScannerTest {
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void boundsEachRangeWithItsSplitKeys() {
+        FakeExecutor fauna = new FakeExecutor(query -> CompletableFuture.completedFuture(page(0, 0, false)));
+        List<Value> rows = new RangeScanner(fauna, "products_by_product_id", pool, 16, false)
+                .scan(Arrays.asList(20L, 10L), true)
+                .collect(Collectors.toList());
+
+        assertEquals(0, rows.size());
+        Set<String> ranges = new HashSet<>();
+        for (JsonNode query : fauna.queries) {
+            ranges.add(String.valueOf(query.get("after")) + ".." + String.valueOf(query.get("before")));
+        }
+        assertEquals(new HashSet<>(Arrays.asList("null..[10]", "[10]..[20]", "[20]..null")), ranges);
+    }
+
+    @Test
+    public void cancelsTheScanWhenTheConsumerWalksAway() throws InterruptedException {
+        // an endless index, every page points to the next one
+        FakeExecutor fauna = new FakeExecutor(query -> {
+            JsonNode after = query.get("after");
+            long from = after == null ? 0 : after.get(0).asLong();
+            return CompletableFuture.completedFuture(page(from, 4, true));
+        });
+        Iterator<Value> rows = new RangeScanner(fauna, "products_by_product_id", pool, 4, false)
+                .withIdleTimeout(200)
+                .scan(Collections.emptyList(), true)
+                .iterator();
+        assertEquals(0L, (long) rows.next().at(0).to(Long.class).get());
+
+        // never closed, the worker has to notice on its own and stop fetching
+        assertTrue(pool.awaitQuiescence(5, TimeUnit.SECONDS));
+        int queries = fauna.queries.size();
+        Thread.sleep(300);
+        assertEquals(queries, fauna.queries.size());
+    }
+
+    /*
+     * A page of size entries with keys from, from + 1, ..., with an after cursor
+     * for the next one if more.
+     */
+    private static Value page(long from, int size, boolean more) {
+        List<Value> data = new ArrayList<>();
+        for (long key = from; key < from + size; key++) {
+            data.add(new ArrayV(Arrays.<Value>asList(new LongV(key), new StringV("products/" + key))));
+        }
+
+        Map<String, Value> page = new LinkedHashMap<>();
+        page.put("data", new ArrayV(data));
+        if (more) {
+            page.put("after", new ArrayV(Collections.<Value>singletonList(new LongV(from + size))));
+        }
+        return new ObjectV(page);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2018 Fauna, Inc.
+ *
+ * Licensed under the Mozilla Public License, Version 2.0 (the "License"); you may
+ * not use this software except in compliance with the License. You may obtain a
+ * copy of the License at
+ *
+ * http://mozilla.org/MPL/2.0/
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed
+ * under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR
+ * CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package fauna.techexercise;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class SchemaTest {
+
+    @Test
+    public void keysClassesAndIndexesByName() {
+        Schema schema = new Schema()
+                .withClassAndAllIndex("products")
+                .withIndex(Schema.index("product_lookup_by_product_id", "products").term("data", "productID").unique())
+                .withClassAndAllIndex("products")
+                .withIndex(Schema.index("product_lookup_by_product_id", "products").term("data", "productID").unique());
+
+        assertEquals(Arrays.asList("products"), schema.getClasses());
+        assertEquals(Arrays.asList("products_all", "product_lookup_by_product_id"), schema.getIndexNames());
+    }
+}